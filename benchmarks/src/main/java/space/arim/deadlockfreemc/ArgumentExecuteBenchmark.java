@@ -0,0 +1,178 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Allocation of {@code execute} with a capturing lambda, compared to the argument-carrying
+ * variants, from async producer threads while a simulated main thread drains the queue. <br>
+ * <br>
+ * Each producer keeps at most {@link #WINDOW} tasks queued, since producers otherwise outpace
+ * the main thread and the queue grows without a steady state. The argument passed is the
+ * producer itself, whose completed count the task advances. <br>
+ * <br>
+ * Run through {@link #main(String[])}, which adds the GC profiler and exits with status 1 unless
+ * {@code gc.alloc.rate.norm} is at most {@link #MAX_ALLOCATION} for the argument-carrying variants.
+ * Their tasks and queue chunks are then all recycled, whereas the capturing lambda adds an object per call.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArgumentExecuteBenchmark {
+
+	/**
+	 * Tasks each producer may have queued at once. Across all producers, stays within the
+	 * pooled argument tasks and queue chunks
+	 */
+	static final int WINDOW = 64;
+	
+	/**
+	 * Maximum bytes allocated per operation by the argument-carrying variants
+	 */
+	static final double MAX_ALLOCATION = 1.0;
+	
+	private static final Consumer<Producer> COMPLETE = ArgumentExecuteBenchmark::complete;
+	private static final BiConsumer<Producer, Object> COMPLETE_WITH = ArgumentExecuteBenchmark::complete;
+	
+	private static volatile Object sink;
+	
+	private SimulatedMainThread mainThread;
+	private BenchmarkImpl df;
+	private final Object argument = new Object();
+	
+	@Setup
+	public void setup() {
+		mainThread = new SimulatedMainThread();
+		df = new BenchmarkImpl(mainThread);
+		df.setPrimaryThread(mainThread.getThread());
+	}
+	
+	@TearDown
+	public void tearDown() {
+		mainThread.stop();
+	}
+	
+	@State(Scope.Thread)
+	public static class Producer {
+		
+		private long submitted;
+		/**
+		 * Written only by the main thread
+		 */
+		private volatile long completed;
+		
+		void awaitWindow() {
+			while (submitted - completed >= WINDOW) {
+				SpinWait.onSpinWait();
+			}
+			submitted++;
+		}
+		
+	}
+	
+	private static void complete(Producer producer) {
+		producer.completed++;
+	}
+	
+	private static void complete(Producer producer, Object argument) {
+		sink = argument;
+		producer.completed++;
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public void executeCapturing(Producer producer) {
+		producer.awaitWindow();
+		Object argument = this.argument;
+		df.execute(() -> complete(producer, argument));
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public void executeWithArgument(Producer producer) {
+		producer.awaitWindow();
+		df.execute(COMPLETE, producer);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public void executeWithTwoArguments(Producer producer) {
+		producer.awaitWindow();
+		df.execute(COMPLETE_WITH, producer, argument);
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Collection<RunResult> results = new Runner(new OptionsBuilder()
+				.include(ArgumentExecuteBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+		boolean passed = true;
+		for (RunResult result : results) {
+			String benchmark = result.getParams().getBenchmark();
+			if (benchmark.endsWith(".executeCapturing")) {
+				// Allocates by design
+				continue;
+			}
+			double allocation = allocationPerOperation(result);
+			boolean within = allocation <= MAX_ALLOCATION;
+			System.out.println(((within) ? "PASS " : "FAIL ") + benchmark + ": "
+					+ String.format("%.3f", allocation) + " B/op (maximum " + MAX_ALLOCATION + ")");
+			passed &= within;
+		}
+		System.out.println((passed) ? "PASSED" : "FAILED");
+		System.exit((passed) ? 0 : 1);
+	}
+	
+	private static double allocationPerOperation(RunResult result) {
+		// Some JMH versions prefix the profiler's result names
+		for (String name : result.getSecondaryResults().keySet()) {
+			if (name.endsWith("gc.alloc.rate.norm")) {
+				return result.getSecondaryResults().get(name).getScore();
+			}
+		}
+		throw new IllegalStateException("No GC profiler result for " + result.getParams().getBenchmark());
+	}
+
+}
@@ -0,0 +1,76 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * Implementation whose main thread is chosen by the benchmark
+ * 
+ */
+class BenchmarkImpl extends AbstractImplementation {
+
+	/**
+	 * Tick source which never ticks. Tasks run only when {@link #unleash()} is called directly
+	 * or the main thread joins a future.
+	 * 
+	 */
+	static final TickSource NO_TICKS = new TickSource() {
+	
+		@Override
+		public void start(Callback callback) {
+		}
+		
+		@Override
+		public void stop() {
+		}
+	};
+	
+	private volatile Thread primaryThread;
+	
+	BenchmarkImpl(TickSource tickSource) {
+		super(tickSource);
+	}
+	
+	void setPrimaryThread(Thread primaryThread) {
+		this.primaryThread = primaryThread;
+	}
+	
+	@Override
+	public boolean isPrimaryThread() {
+		return Thread.currentThread() == primaryThread;
+	}
+	
+	/**
+	 * Creates an implementation to compare
+	 * 
+	 * @param implementation either "abstract" or "concurrent"
+	 * @param tickSource the tick source if the implementation has a main thread
+	 * @return the implementation
+	 */
+	static DeadlockFree create(String implementation, TickSource tickSource) {
+		switch (implementation) {
+		case "abstract":
+			return new BenchmarkImpl(tickSource);
+		case "concurrent":
+			return new ConcurrentImpl();
+		default:
+			throw new IllegalArgumentException("Unknown implementation " + implementation);
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@code execute} from async producer threads, while a simulated
+ * main thread drains the queue. Run with {@code -prof gc} for allocation per operation.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecuteBenchmark {
+
+	private static final Runnable NOOP = () -> {};
+	
+	@Param({"abstract", "concurrent"})
+	private String implementation;
+	
+	private SimulatedMainThread mainThread;
+	private DeadlockFree df;
+	
+	@Setup
+	public void setup() {
+		mainThread = new SimulatedMainThread();
+		df = BenchmarkImpl.create(implementation, mainThread);
+		if (df instanceof BenchmarkImpl) {
+			((BenchmarkImpl) df).setPrimaryThread(mainThread.getThread());
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		mainThread.stop();
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public void execute1Producer() {
+		df.execute(NOOP);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public void execute4Producers() {
+		df.execute(NOOP);
+	}
+	
+	@Benchmark
+	@Threads(16)
+	public void execute16Producers() {
+		df.execute(NOOP);
+	}
+	
+	@Benchmark
+	@Threads(64)
+	public void execute64Producers() {
+		df.execute(NOOP);
+	}
+
+}
@@ -0,0 +1,94 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round-trip latency of {@code join} and {@code get} on the main thread, awaiting a future
+ * which completes on an async thread followed by a main thread continuation. <br>
+ * The benchmark thread is the main thread.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JoinBenchmark {
+
+	private static final Supplier<Integer> ASYNC_STAGE = () -> 1;
+	private static final Function<Integer, Integer> MAIN_THREAD_STAGE = (value) -> value + 1;
+	
+	@Param({"abstract", "concurrent"})
+	private String implementation;
+	
+	private ExecutorService asyncPool;
+	private DeadlockFree df;
+	
+	@Setup
+	public void setup() {
+		asyncPool = Executors.newSingleThreadExecutor();
+		df = BenchmarkImpl.create(implementation, BenchmarkImpl.NO_TICKS);
+		if (df instanceof BenchmarkImpl) {
+			((BenchmarkImpl) df).setPrimaryThread(Thread.currentThread());
+		}
+	}
+	
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		asyncPool.shutdown();
+		asyncPool.awaitTermination(10L, TimeUnit.SECONDS);
+	}
+	
+	private CompletableFuture<Integer> roundTrip() {
+		return CompletableFuture.supplyAsync(ASYNC_STAGE, asyncPool).thenApplyAsync(MAIN_THREAD_STAGE, df);
+	}
+	
+	@Benchmark
+	public Integer join() {
+		return df.join(roundTrip());
+	}
+	
+	@Benchmark
+	public Integer get() throws InterruptedException, ExecutionException {
+		return df.get(roundTrip());
+	}
+
+}
@@ -0,0 +1,77 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tick source running on its own thread, which acts as the main thread. Ticks every 50 milliseconds
+ * and drains queued tasks in between, like {@link PaperTickSource}. Once draining stops, sleeps until
+ * the next tick, as the server would.
+ * 
+ */
+class SimulatedMainThread implements TickSource {
+
+	private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+	
+	private final Thread thread;
+	private volatile Callback callback;
+	private volatile boolean running = true;
+	
+	SimulatedMainThread() {
+		thread = new Thread(this::run, "DeadlockFreeMC-Simulated-Main-Thread");
+		thread.setDaemon(true);
+	}
+	
+	Thread getThread() {
+		return thread;
+	}
+	
+	@Override
+	public void start(Callback callback) {
+		this.callback = callback;
+		thread.start();
+	}
+	
+	private void run() {
+		Callback callback = this.callback;
+		while (running) {
+			long tickStart = System.nanoTime();
+			callback.onTickStart();
+			callback.onTickEnd(TICK_NANOS - (System.nanoTime() - tickStart));
+			long remaining;
+			while (running && (remaining = TICK_NANOS - (System.nanoTime() - tickStart)) > 0L) {
+				LockSupport.parkNanos(remaining);
+			}
+		}
+	}
+	
+	@Override
+	public void stop() {
+		running = false;
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
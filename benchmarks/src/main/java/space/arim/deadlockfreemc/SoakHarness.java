@@ -0,0 +1,468 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Soak harness simulating a server under load from async producers. Not a JMH benchmark,
+ * since it measures the server as a whole over a long run. <br>
+ * <br>
+ * A simulated main thread ticks at 20 TPS, each tick doing a configurable amount of game work,
+ * then running queued tasks between ticks as Paper would. Hundreds of producer threads meanwhile
+ * submit tasks and await them through {@code join} and {@code get}, using future chains which hop
+ * between the async pool and the main thread, including main thread tasks which themselves join. <br>
+ * <br>
+ * Reports TPS, tick duration percentiles, enqueue-to-run latency percentiles, drain overrun
+ * percentiles, and heap usage periodically, then checks the measured run against thresholds.
+ * The tick duration covers the tick itself. The drain overrun is how far running queued tasks
+ * between ticks delayed the next tick, so that work done there is checked too. The process exits
+ * with status 1 if any threshold is exceeded, so that latency regressions can be caught before deploying. <br>
+ * <br>
+ * Options are given as {@code key=value} arguments, for example
+ * {@code java -cp target/benchmarks.jar space.arim.deadlockfreemc.SoakHarness durationSeconds=1800 producers=500}.
+ * The defaults are printed at startup.
+ * 
+ */
+public final class SoakHarness {
+
+	private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+	
+	private static volatile long sink;
+	
+	private final Options options;
+	private final TickLoop tickLoop;
+	private final ManagedDeadlockFree df;
+	private final Executor async;
+	private final DurationHistogram latencies = new DurationHistogram();
+	private final List<Thread> producers = new ArrayList<>();
+	private volatile boolean producing = true;
+	
+	private SoakHarness(Options options) {
+		this.options = options;
+		tickLoop = new TickLoop(options);
+		df = DeadlockFree.builder().tickSource(tickLoop).build();
+		async = df.async();
+	}
+	
+	public static void main(String[] args) throws InterruptedException {
+		Options options = new Options(args);
+		System.out.println("Soak harness options: " + options);
+		boolean passed = new SoakHarness(options).run();
+		System.exit((passed) ? 0 : 1);
+	}
+	
+	private boolean run() throws InterruptedException {
+		for (int n = 0; n < options.getInt("producers"); n++) {
+			Thread producer = new Thread(this::produce, "Soak-Producer-" + n);
+			producer.setDaemon(true);
+			producers.add(producer);
+			producer.start();
+		}
+		TimeUnit.SECONDS.sleep(options.getLong("warmupSeconds"));
+		
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long baselineHeap = usedHeapAfterGc(memory);
+		Window total = new Window();
+		long reportNanos = TimeUnit.SECONDS.toNanos(options.getLong("reportSeconds"));
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getLong("durationSeconds"));
+		long now;
+		while ((now = System.nanoTime()) - end < 0) {
+			Window window = new Window();
+			LockSupport.parkNanos(Math.min(reportNanos, end - now));
+			System.out.println(window.finish().describe()
+					+ String.format(", heap %.1f MB", toMegabytes(memory.getHeapMemoryUsage().getUsed())));
+		}
+		Result result = total.finish();
+		long heapGrowth = usedHeapAfterGc(memory) - baselineHeap;
+		
+		producing = false;
+		for (Thread producer : producers) {
+			producer.join(TimeUnit.SECONDS.toMillis(10L));
+		}
+		df.shutdownAsync(10L, TimeUnit.SECONDS);
+		df.shutdown();
+		
+		System.out.println("Total: " + result.describe() + String.format(", heap growth %.1f MB", toMegabytes(heapGrowth)));
+		boolean passed = check("TPS", result.tps, options.getDouble("minTps"), false);
+		passed &= check("Tick duration p99 (ms)", result.tickP99Millis, options.getDouble("maxTickP99Millis"), true);
+		passed &= check("Drain overrun p99 (ms)", result.drainOverrunP99Millis, options.getDouble("maxDrainOverrunP99Millis"), true);
+		passed &= check("Enqueue-to-run latency p99 (ms)", result.latencyP99Millis, options.getDouble("maxLatencyP99Millis"), true);
+		passed &= check("Heap growth (MB)", toMegabytes(heapGrowth), options.getDouble("maxHeapGrowthMb"), true);
+		System.out.println((passed) ? "PASSED" : "FAILED");
+		return passed;
+	}
+	
+	private static boolean check(String name, double value, double threshold, boolean maximum) {
+		boolean passed = (maximum) ? value <= threshold : value >= threshold;
+		System.out.println(((passed) ? "PASS " : "FAIL ") + name + ": " + String.format("%.2f", value)
+				+ ((maximum) ? " (maximum " : " (minimum ") + threshold + ")");
+		return passed;
+	}
+	
+	private static long usedHeapAfterGc(MemoryMXBean memory) {
+		for (int n = 0; n < 3; n++) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+	
+	private static double toMegabytes(long bytes) {
+		return bytes / (1024D * 1024D);
+	}
+	
+	/*
+	 * Producers
+	 */
+	
+	private void produce() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long thinkMillis = options.getLong("thinkMillis");
+		while (producing) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(random.nextLong(thinkMillis + 1));
+				int choice = random.nextInt(100);
+				if (choice < 50) {
+					// Fire and forget, such as updating an entity
+					long submitted = System.nanoTime();
+					df.execute(() -> latencies.record(System.nanoTime() - submitted));
+				
+				} else if (choice < 80) {
+					// Load asynchronously, apply on the main thread, save asynchronously, await the whole chain
+					int loadWork = random.nextInt(1000);
+					sink += df.join(CompletableFuture.supplyAsync(() -> asyncWork(loadWork), async)
+							.thenApplyAsync((value) -> value + mainThreadWork(), df)
+							.thenApplyAsync((value) -> value + asyncWork(100), async));
+				
+				} else if (choice < 95) {
+					// Read state from the main thread
+					sink += df.get(df.submit(onMainThread(SoakHarness::mainThreadWork)));
+				
+				} else {
+					// A main thread task which itself awaits a future needing the main thread
+					sink += df.join(df.submit(onMainThread(() -> df.join(
+							CompletableFuture.supplyAsync(() -> asyncWork(100), async)
+									.thenApplyAsync((value) -> value + mainThreadWork(), df)))));
+				}
+			} catch (InterruptedException ex) {
+				return;
+			} catch (ExecutionException | CompletionException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Wraps a main thread supplier to record its enqueue-to-run latency, measured from when it is wrapped.
+	 * Should be called immediately before submitting.
+	 * 
+	 */
+	private Supplier<Long> onMainThread(Supplier<Long> supplier) {
+		long submitted = System.nanoTime();
+		return () -> {
+			latencies.record(System.nanoTime() - submitted);
+			return supplier.get();
+		};
+	}
+	
+	private static long asyncWork(int iterations) {
+		long value = 0L;
+		for (int n = 0; n < iterations; n++) {
+			value += (value ^ n) * 31L;
+		}
+		return value;
+	}
+	
+	private static long mainThreadWork() {
+		return asyncWork(ThreadLocalRandom.current().nextInt(2000));
+	}
+	
+	/*
+	 * Measurement
+	 */
+	
+	/**
+	 * Measures from its creation until {@link #finish()}
+	 * 
+	 */
+	private final class Window {
+	
+		private final long start = System.nanoTime();
+		private final long ticks = tickLoop.ticks.get();
+		private final long[] tickDurations = tickLoop.durations.snapshot();
+		private final long[] drainOverruns = tickLoop.drainOverruns.snapshot();
+		private final long[] latencyCounts = latencies.snapshot();
+		
+		Result finish() {
+			double seconds = (System.nanoTime() - start) / 1_000_000_000D;
+			long[] tickDurations = DurationHistogram.since(tickLoop.durations.snapshot(), this.tickDurations);
+			long[] drainOverruns = DurationHistogram.since(tickLoop.drainOverruns.snapshot(), this.drainOverruns);
+			long[] latencyCounts = DurationHistogram.since(latencies.snapshot(), this.latencyCounts);
+			return new Result((tickLoop.ticks.get() - ticks) / seconds,
+					DurationHistogram.percentileMillis(tickDurations, 50D),
+					DurationHistogram.percentileMillis(tickDurations, 99D),
+					DurationHistogram.percentileMillis(tickDurations, 100D),
+					DurationHistogram.percentileMillis(drainOverruns, 99D),
+					DurationHistogram.percentileMillis(drainOverruns, 100D),
+					DurationHistogram.percentileMillis(latencyCounts, 50D),
+					DurationHistogram.percentileMillis(latencyCounts, 99D),
+					DurationHistogram.percentileMillis(latencyCounts, 100D));
+		}
+	
+	}
+	
+	private static final class Result {
+	
+		final double tps;
+		final double tickP50Millis;
+		final double tickP99Millis;
+		final double tickMaxMillis;
+		final double drainOverrunP99Millis;
+		final double drainOverrunMaxMillis;
+		final double latencyP50Millis;
+		final double latencyP99Millis;
+		final double latencyMaxMillis;
+		
+		Result(double tps, double tickP50Millis, double tickP99Millis, double tickMaxMillis,
+				double drainOverrunP99Millis, double drainOverrunMaxMillis,
+				double latencyP50Millis, double latencyP99Millis, double latencyMaxMillis) {
+			this.tps = tps;
+			this.tickP50Millis = tickP50Millis;
+			this.tickP99Millis = tickP99Millis;
+			this.tickMaxMillis = tickMaxMillis;
+			this.drainOverrunP99Millis = drainOverrunP99Millis;
+			this.drainOverrunMaxMillis = drainOverrunMaxMillis;
+			this.latencyP50Millis = latencyP50Millis;
+			this.latencyP99Millis = latencyP99Millis;
+			this.latencyMaxMillis = latencyMaxMillis;
+		}
+		
+		String describe() {
+			return String.format("TPS %.2f, tick p50/p99/max %.1f/%.1f/%.1f ms, drain overrun p99/max %.1f/%.1f ms, "
+					+ "latency p50/p99/max %.1f/%.1f/%.1f ms", tps, tickP50Millis, tickP99Millis, tickMaxMillis,
+					drainOverrunP99Millis, drainOverrunMaxMillis, latencyP50Millis, latencyP99Millis, latencyMaxMillis);
+		}
+	
+	}
+	
+	/**
+	 * Histogram of durations in buckets of 100 microseconds, up to 10 seconds. Recording never allocates,
+	 * and may be done from any thread.
+	 * 
+	 */
+	private static final class DurationHistogram {
+	
+		private static final long BUCKET_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+		private static final int BUCKETS = 100_000;
+		
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		
+		void record(long nanos) {
+			buckets.incrementAndGet((int) Math.min(Math.max(0L, nanos) / BUCKET_NANOS, BUCKETS - 1));
+		}
+		
+		long[] snapshot() {
+			long[] counts = new long[BUCKETS];
+			for (int n = 0; n < BUCKETS; n++) {
+				counts[n] = buckets.get(n);
+			}
+			return counts;
+		}
+		
+		static long[] since(long[] counts, long[] previous) {
+			for (int n = 0; n < BUCKETS; n++) {
+				counts[n] -= previous[n];
+			}
+			return counts;
+		}
+		
+		/**
+		 * Estimates a percentile as the upper bound of the bucket in which it lies
+		 * 
+		 */
+		static double percentileMillis(long[] counts, double percentile) {
+			long total = 0L;
+			for (long count : counts) {
+				total += count;
+			}
+			if (total == 0L) {
+				return 0D;
+			}
+			long threshold = (long) Math.ceil(total * (percentile / 100D));
+			long seen = 0L;
+			int bucket = 0;
+			for (; bucket < BUCKETS - 1; bucket++) {
+				seen += counts[bucket];
+				if (seen >= threshold && seen > 0L) {
+					break;
+				}
+			}
+			return (bucket + 1) * BUCKET_NANOS / 1_000_000D;
+		}
+	
+	}
+	
+	/*
+	 * Simulated server
+	 */
+	
+	/**
+	 * Tick source running a 20 TPS tick loop on its own thread, which acts as the main thread.
+	 * Like a vanilla server, a tick which overruns is followed immediately by the next,
+	 * without trying to catch up, so that overruns show as lost TPS.
+	 * 
+	 */
+	private static final class TickLoop implements TickSource {
+	
+		private final long gameWorkNanos;
+		private final long gameWorkJitterNanos;
+		private final Thread thread;
+		private volatile Callback callback;
+		private volatile boolean running = true;
+		
+		final AtomicLong ticks = new AtomicLong();
+		final DurationHistogram durations = new DurationHistogram();
+		/**
+		 * How far draining queued tasks in {@link Callback#onTickEnd(long)} ran past the next tick's start
+		 * 
+		 */
+		final DurationHistogram drainOverruns = new DurationHistogram();
+		
+		TickLoop(Options options) {
+			gameWorkNanos = TimeUnit.MILLISECONDS.toNanos(options.getLong("gameWorkMillis"));
+			gameWorkJitterNanos = TimeUnit.MILLISECONDS.toNanos(options.getLong("gameWorkJitterMillis"));
+			thread = new Thread(this::run, "Soak-Main-Thread");
+			thread.setDaemon(true);
+		}
+		
+		@Override
+		public void start(Callback callback) {
+			this.callback = callback;
+			thread.start();
+		}
+		
+		private void run() {
+			Callback callback = this.callback;
+			long nextTick = System.nanoTime();
+			while (running) {
+				long tickStart = System.nanoTime();
+				callback.onTickStart();
+				simulateGameWork();
+				long tickEnd = System.nanoTime();
+				durations.record(tickEnd - tickStart);
+				ticks.incrementAndGet();
+				
+				nextTick += TICK_NANOS;
+				if (tickEnd - nextTick > 0L) {
+					nextTick = tickEnd;
+				}
+				callback.onTickEnd(nextTick - tickEnd);
+				drainOverruns.record(System.nanoTime() - nextTick);
+				long remaining;
+				while ((remaining = nextTick - System.nanoTime()) > 0L && running) {
+					LockSupport.parkNanos(remaining);
+				}
+			}
+		}
+		
+		private void simulateGameWork() {
+			long jitter = (gameWorkJitterNanos == 0L) ? 0L
+					: ThreadLocalRandom.current().nextLong(-gameWorkJitterNanos, gameWorkJitterNanos + 1);
+			long deadline = System.nanoTime() + Math.max(0L, gameWorkNanos + jitter);
+			long value = 0L;
+			while (System.nanoTime() - deadline < 0) {
+				value += asyncWork(100);
+			}
+			sink += value;
+		}
+		
+		@Override
+		public void stop() {
+			running = false;
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	
+	}
+	
+	private static final class Options {
+	
+		private final Map<String, String> values = new LinkedHashMap<>();
+		
+		Options(String[] args) {
+			values.put("durationSeconds", "600");
+			values.put("warmupSeconds", "30");
+			values.put("reportSeconds", "10");
+			values.put("producers", "200");
+			values.put("thinkMillis", "20");
+			values.put("gameWorkMillis", "30");
+			values.put("gameWorkJitterMillis", "10");
+			values.put("minTps", "19.5");
+			values.put("maxTickP99Millis", "50");
+			values.put("maxDrainOverrunP99Millis", "2");
+			values.put("maxLatencyP99Millis", "100");
+			values.put("maxHeapGrowthMb", "64");
+			for (String arg : args) {
+				int separator = arg.indexOf('=');
+				String key = (separator == -1) ? arg : arg.substring(0, separator);
+				if (separator == -1 || !values.containsKey(key)) {
+					throw new IllegalArgumentException("Unknown option " + arg + ". Options are " + values.keySet());
+				}
+				values.put(key, arg.substring(separator + 1));
+			}
+		}
+		
+		long getLong(String key) {
+			return Long.parseLong(values.get(key));
+		}
+		
+		int getInt(String key) {
+			return Integer.parseInt(values.get(key));
+		}
+		
+		double getDouble(String key) {
+			return Double.parseDouble(values.get(key));
+		}
+		
+		@Override
+		public String toString() {
+			return values.toString();
+		}
+	
+	}
+
+}
@@ -0,0 +1,74 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rate at which {@code unleash} drains queued tasks on the main thread. <br>
+ * Only applies to {@code AbstractImplementation}, since {@code ConcurrentImpl} has no queue.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnleashBenchmark {
+
+	static final int BATCH = 10_000;
+	
+	private static final Runnable NOOP = () -> {};
+	
+	private BenchmarkImpl df;
+	
+	@Setup
+	public void setup() {
+		// No primary thread, so that execute always queues
+		df = new BenchmarkImpl(BenchmarkImpl.NO_TICKS);
+	}
+	
+	@Setup(Level.Invocation)
+	public void fill() {
+		for (int n = 0; n < BATCH; n++) {
+			df.execute(NOOP);
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void unleash() {
+		df.unleash();
+	}
+
+}
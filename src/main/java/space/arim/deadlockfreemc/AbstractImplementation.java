@@ -18,41 +18,673 @@
  */
 package space.arim.deadlockfreemc;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-abstract class AbstractImplementation implements DeadlockFree {
+abstract class AbstractImplementation implements ManagedDeadlockFree {
 
-	private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+	private final FairQueue tasks = new FairQueue();
+	/**
+	 * Owner of tasks submitted directly, rather than through {@link #forOwner(String, int)}
+	 * 
+	 */
+	private final OwnerQueue sharedOwner;
+	private final int queueChunkSize;
+	private final ConcurrentMap<String, OwnerView> ownerViews = new ConcurrentHashMap<>();
+	/**
+	 * Due timers run as ordinary tasks of their owners. Not subject to the queue bound,
+	 * since they were accepted when scheduled
+	 * 
+	 */
+	private final TimingWheel timers = new TimingWheel((timer) -> offer(timer.owner(), timer, Priority.NORMAL));
+	private final SnapshotCache snapshots = new SnapshotCache(this::offerSnapshotRefresh);
+	private final ArgumentTaskPool argumentTasks = new ArgumentTaskPool();
+	/**
+	 * Active bulk jobs, accessed only on the main thread
+	 * 
+	 */
+	private final Deque<BulkJob<?, ?>> bulkJobs = new ArrayDeque<>();
 	private volatile Thread mainThread;
+	private final WaitState waitState = new WaitState();
+	private final BiConsumer<Object, Throwable> signaller = (result, ex) -> waitState.signal(mainThread);
+	
+	/**
+	 * Current spin limit, adapted by the main thread. Spinning is pointless on a single processor
+	 * 
+	 */
+	private int spinLimit = MIN_SPINS;
+	private static final boolean MULTIPROCESSOR = Runtime.getRuntime().availableProcessors() > 1;
+	private static final int MIN_SPINS = (MULTIPROCESSOR) ? 16 : 0;
+	private static final int MAX_SPINS = (MULTIPROCESSOR) ? 1024 : 0;
+	
+	/**
+	 * Interval at which to poll futures other than CompletableFuture, which cannot signal completion
+	 * 
+	 */
+	private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+	
+	/**
+	 * Depth of nested joins on the main thread, including {@code get}. Accessed only on the main thread
+	 * 
+	 */
+	private int joinDepth;
+	static final int DEFAULT_MAXIMUM_JOIN_DEPTH = 16;
+	private volatile int maximumJoinDepth = DEFAULT_MAXIMUM_JOIN_DEPTH;
+	/**
+	 * How long a join past the maximum depth waits without running tasks, before concluding
+	 * that the future it awaits needs the main thread, and running tasks after all.
+	 * Shortened to the tick budget, if smaller, since the main thread does nothing meanwhile.
+	 * 
+	 */
+	private static final long NESTED_JOIN_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(2L);
+	/**
+	 * Marks that {@link #registerSignal(Future)} has not yet been called for the awaited future
+	 * 
+	 */
+	private static final long UNREGISTERED = -1L;
+	
+	private volatile TickBudget tickBudget = TickBudget.unlimited();
+	private volatile TickStats lastTickStats = TickStats.NONE;
+	
+	private volatile QueueBound queueBound = QueueBound.unbounded();
+	/**
+	 * Producers awaiting room in the queue wait on this lock. Notified by the main thread
+	 * as it runs tasks, but waiting is also timed, so a missed notification only delays. <br>
+	 * A lock rather than a monitor is used so that blocked virtual threads do not pin their carrier.
+	 * 
+	 */
+	private final Lock capacityLock = new ReentrantLock();
+	private final Condition capacityAvailable = capacityLock.newCondition();
+	/**
+	 * Modified only while holding the capacity lock
+	 * 
+	 */
+	private volatile int blockedProducers;
+	
+	/**
+	 * Null if metrics are disabled
+	 * 
+	 */
+	private volatile Metrics metrics;
+	/**
+	 * Null if the stall watchdog is disabled
+	 * 
+	 */
+	private volatile StallSampler stallSampler;
+	private final AsyncPool asyncPool;
+	private final AsyncScope asyncScope;
+	
+	/**
+	 * Creates the tick source when ticking starts
+	 * 
+	 */
+	private final Supplier<? extends TickSource> tickSources;
+	/**
+	 * The tick source, once started on the primary thread. Guarded by this
+	 * 
+	 */
+	private TickSource tickSource;
+	/**
+	 * One of {@link #NOT_STARTED}, {@link #STARTED} or {@link #SHUT_DOWN}. Modified only while holding this
+	 * 
+	 */
+	private volatile int tickState = NOT_STARTED;
+	private static final int NOT_STARTED = 0;
+	private static final int STARTED = 1;
+	private static final int SHUT_DOWN = 2;
+	
+	/**
+	 * Idle draining stops this long before the next tick is due
+	 * 
+	 */
+	private static final long IDLE_MARGIN_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+	/**
+	 * Idle draining waits this long for a task to arrive before handing the thread back to the server
+	 * 
+	 */
+	private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+	
+	AbstractImplementation(TickSource tickSource) {
+		this(tickSource, new AsyncPool(), MpscChunkedQueue.DEFAULT_CHUNK_SIZE);
+	}
+	
+	AbstractImplementation(TickSource tickSource, AsyncPool asyncPool, int queueChunkSize) {
+		this(() -> tickSource, asyncPool, queueChunkSize);
+		startTicking();
+	}
+	
+	/**
+	 * Creates an implementation which starts ticking when first used, that is, when a task
+	 * is first queued, or a timer or snapshot first created. The tick source is created and
+	 * started through {@link #runOnPrimaryThread(Runnable)}
+	 * 
+	 * @param tickSources creates the tick source, once ticking starts
+	 * @param asyncPool the async worker pool
+	 * @param queueChunkSize the chunk size of task queues
+	 */
+	AbstractImplementation(Supplier<? extends TickSource> tickSources, AsyncPool asyncPool, int queueChunkSize) {
+		this.tickSources = tickSources;
+		this.asyncPool = asyncPool;
+		asyncScope = new AsyncScope(asyncPool);
+		this.queueChunkSize = queueChunkSize;
+		sharedOwner = new OwnerQueue("shared", 1, queueChunkSize);
+		tasks.register(sharedOwner);
+	}
+	
+	private void ensureStarted() {
+		if (tickState != STARTED) {
+			startTicking();
+		}
+	}
+	
+	/**
+	 * Starts ticking, unless already started
+	 * 
+	 * @throws RejectedExecutionException if shut down
+	 */
+	private synchronized void startTicking() {
+		switch (tickState) {
+		case NOT_STARTED:
+			break;
+		case STARTED:
+			return;
+		default:
+			throw new RejectedExecutionException("This DeadlockFree instance has been shut down");
+		}
+		runOnPrimaryThread(this::startTickSource);
+		tickState = STARTED;
+	}
+	
+	/**
+	 * Runs a command on the primary thread, used to start the tick source, since platform
+	 * schedulers and event buses may not be used from other threads. By default, runs the
+	 * command directly, which suits tick sources usable from any thread
+	 * 
+	 * @param command the command
+	 */
+	void runOnPrimaryThread(Runnable command) {
+		command.run();
+	}
+	
+	/**
+	 * Creates and starts the tick source, unless shut down in the meantime
+	 * 
+	 */
+	private synchronized void startTickSource() {
+		if (tickState == SHUT_DOWN || tickSource != null) {
+			return;
+		}
+		TickSource tickSource = tickSources.get();
+		tickSource.start(new TickSource.Callback() {
+			
+			@Override
+			public void onTickStart() {
+				setMainThread();
+				timers.advance();
+				snapshots.refresh();
+				unleash();
+				afterTick();
+			}
+			
+			@Override
+			public void onTickEnd(long nanosUntilNextTick) {
+				unleashIdle(System.nanoTime() + nanosUntilNextTick - IDLE_MARGIN_NANOS);
+			}
+		});
+		this.tickSource = tickSource;
+	}
+	
+	@Override
+	public void shutdown() {
+		if (stop()) {
+			asyncPool.initiateShutdown();
+		}
+	}
+	
+	/**
+	 * Shuts down as by {@link #shutdown()}, except that the async pool, which may be shared,
+	 * is left running
+	 * 
+	 * @return false if already shut down, true otherwise
+	 */
+	boolean stop() {
+		synchronized (this) {
+			if (tickState == SHUT_DOWN) {
+				return false;
+			}
+			if (tickSource != null) {
+				tickSource.stop();
+				tickSource = null;
+			}
+			tickState = SHUT_DOWN;
+		}
+		notifyBlockedProducers();
+		setStallWatchdog(StallWatchdog.disabled());
+		if (isPrimaryThread()) {
+			// Complete what was already accepted
+			while (runNext()) {
+				// Keep going
+			}
+			BulkJob<?, ?> job;
+			while ((job = bulkJobs.pollFirst()) != null) {
+				job.runFully();
+			}
+		}
+		setMetricsEnabled(false);
+		return true;
+	}
+	
+	@Override
+	public boolean isShutdown() {
+		return tickState == SHUT_DOWN;
+	}
 	
 	@Override
 	public void execute(Runnable command) {
+		execute(command, Priority.NORMAL);
+	}
+	
+	@Override
+	public void execute(Runnable command, Priority priority) {
+		execute(sharedOwner, command, priority);
+	}
+	
+	void execute(OwnerQueue owner, Runnable command, Priority priority) {
+		Objects.requireNonNull(priority, "priority");
 		if (isPrimaryThread()) {
 			command.run();
 		} else {
-			tasks.offer(command);
-			LockSupport.unpark(mainThread);
+			enqueue(owner, command, priority);
 		}
 	}
 
 	@Override
-	public <T> T join(CompletableFuture<T> future) {
+	public <A> void execute(Consumer<? super A> action, A argument) {
+		execute(sharedOwner, action, argument);
+	}
+	
+	<A> void execute(OwnerQueue owner, Consumer<? super A> action, A argument) {
+		Objects.requireNonNull(action, "action");
 		if (isPrimaryThread()) {
-			if (mainThread == null) {
-				mainThread = Thread.currentThread();
+			action.accept(argument);
+			return;
+		}
+		ArgumentTask task = argumentTasks.acquire();
+		task.set(action, argument);
+		enqueueArgumentTask(owner, task);
+	}
+	
+	@Override
+	public <A, B> void execute(BiConsumer<? super A, ? super B> action, A first, B second) {
+		execute(sharedOwner, action, first, second);
+	}
+	
+	<A, B> void execute(OwnerQueue owner, BiConsumer<? super A, ? super B> action, A first, B second) {
+		Objects.requireNonNull(action, "action");
+		if (isPrimaryThread()) {
+			action.accept(first, second);
+			return;
+		}
+		ArgumentTask task = argumentTasks.acquire();
+		task.set(action, first, second);
+		enqueueArgumentTask(owner, task);
+	}
+	
+	private void enqueueArgumentTask(OwnerQueue owner, ArgumentTask task) {
+		try {
+			enqueue(owner, task, Priority.NORMAL);
+		} catch (RejectedExecutionException ex) {
+			task.discard();
+			throw ex;
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> submit(Runnable command) {
+		Objects.requireNonNull(command, "command");
+		return submit(sharedOwner, () -> {
+			command.run();
+			return null;
+		});
+	}
+	
+	@Override
+	public <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+		return submit(sharedOwner, supplier);
+	}
+	
+	<T> CompletableFuture<T> submit(OwnerQueue owner, Supplier<T> supplier) {
+		SubmittedTask<T> task = new SubmittedTask<>(Objects.requireNonNull(supplier, "supplier"));
+		if (isPrimaryThread()) {
+			task.run();
+		} else {
+			enqueue(owner, task, Priority.NORMAL);
+		}
+		return task;
+	}
+	
+	@Override
+	public void executeAll(Collection<? extends Runnable> commands) {
+		executeAll(sharedOwner, commands);
+	}
+	
+	void executeAll(OwnerQueue owner, Collection<? extends Runnable> commands) {
+		Runnable[] array = commands.toArray(new Runnable[0]);
+		for (Runnable command : array) {
+			Objects.requireNonNull(command, "command");
+		}
+		if (isPrimaryThread()) {
+			new BatchTask(array).run();
+			return;
+		}
+		switch (array.length) {
+		case 0:
+			return;
+		case 1:
+			enqueue(owner, array[0], Priority.NORMAL);
+			return;
+		default:
+			// One queue operation and at most one wakeup for the whole batch
+			enqueue(owner, new BatchTask(array), Priority.NORMAL);
+			return;
+		}
+	}
+	
+	@Override
+	public void executeCoalesced(Object key, Runnable command) {
+		executeCoalesced(sharedOwner, key, command);
+	}
+	
+	void executeCoalesced(OwnerQueue owner, Object key, Runnable command) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(command, "command");
+		// Each owner has its own keys
+		CoalescedTasks coalescedTasks = owner.coalescedTasks();
+		if (isPrimaryThread()) {
+			coalescedTasks.runNow(key, command);
+			return;
+		}
+		Runnable drainer = coalescedTasks.submit(key, command);
+		if (drainer != null) {
+			enqueue(owner, drainer, Priority.NORMAL);
+		}
+	}
+	
+	/**
+	 * Queues a task from a thread other than the main thread, subject to the queue bound
+	 * 
+	 * @param owner the owner of the task
+	 * @param task the task
+	 * @param priority the requested priority
+	 */
+	private void enqueue(OwnerQueue owner, Runnable task, Priority priority) {
+		StallSampler stallSampler = this.stallSampler;
+		if (stallSampler != null) {
+			stallSampler.sampleSubmitSite(task);
+		}
+		QueueBound bound = queueBound;
+		if (!bound.isUnbounded() && tasks.size() >= bound.getCapacity() && !handleOverflow(task, bound)) {
+			return;
+		}
+		offer(owner, task, priority);
+	}
+	
+	private void offer(OwnerQueue owner, Runnable task, Priority priority) {
+		ensureStarted();
+		long stamp = (metrics == null) ? 0L : System.nanoTime();
+		if (task instanceof PromotableTask) {
+			((PromotableTask) task).queued(owner, stamp);
+		}
+		tasks.offer(owner, task, stamp, priority);
+		waitState.signal(mainThread);
+	}
+	
+	/**
+	 * Queues the refresh of an invalidated snapshot. Like due timers, not subject to the queue bound,
+	 * since snapshot readers must never block or be rejected
+	 * 
+	 * @param refresh the refresh
+	 */
+	private void offerSnapshotRefresh(Runnable refresh) {
+		offer(sharedOwner, refresh, Priority.NORMAL);
+	}
+	
+	/**
+	 * Applies the overflow policy to a task submitted while the queue is full
+	 * 
+	 * @param task the task
+	 * @param bound the queue bound
+	 * @return true if the task should still be queued, false if it was handled
+	 * @throws RejectedExecutionException if the task is rejected
+	 */
+	private boolean handleOverflow(Runnable task, QueueBound bound) {
+		Metrics metrics = this.metrics;
+		switch (bound.getPolicy()) {
+		case BLOCK:
+			awaitCapacity(metrics);
+			return true;
+		case CALLER_RUNS:
+			if (!isPrimaryThread() && !(task instanceof AsyncSafe)) {
+				awaitCapacity(metrics);
+				return true;
 			}
-			unleash();
-			while (!future.isDone()) {
-				LockSupport.park();
-				unleash();
+			if (metrics != null) {
+				metrics.recordCallerRun();
+			}
+			task.run();
+			return false;
+		case REJECT:
+			if (metrics != null) {
+				metrics.recordRejection();
+			}
+			throw new RejectedExecutionException("Main thread queue is full (capacity " + bound.getCapacity() + ")");
+		case DROP_OLDEST:
+			// The oldest task may not be found if a producer is mid-offer, in which case the task is rejected
+			Runnable dropped = tasks.removeOldest((queued) -> queued instanceof Discardable);
+			if (dropped == null) {
+				if (metrics != null) {
+					metrics.recordRejection();
+				}
+				throw new RejectedExecutionException("Main thread queue is full (capacity " + bound.getCapacity()
+						+ ") and holds no task which can be dropped");
+			}
+			if (metrics != null) {
+				metrics.recordDrop();
+			}
+			((Discardable) dropped).discard();
+			return true;
+		default:
+			throw new IllegalStateException("Unknown overflow policy " + bound.getPolicy());
+		}
+	}
+	
+	/**
+	 * Waits until the queue has room, or the queue bound no longer blocks
+	 * 
+	 * @param metrics the metrics, or null if disabled
+	 * @throws RejectedExecutionException if interrupted while waiting
+	 */
+	private void awaitCapacity(Metrics metrics) {
+		long start = System.nanoTime();
+		try {
+			capacityLock.lockInterruptibly();
+			try {
+				blockedProducers++;
+				try {
+					for (;;) {
+						QueueBound bound = queueBound;
+						OverflowPolicy policy = bound.getPolicy();
+						if ((policy != OverflowPolicy.BLOCK && policy != OverflowPolicy.CALLER_RUNS)
+								|| tasks.size() < bound.getCapacity() || tickState == SHUT_DOWN) {
+							break;
+						}
+						capacityAvailable.awaitNanos(POLL_NANOS);
+					}
+				} finally {
+					blockedProducers--;
+				}
+			} finally {
+				capacityLock.unlock();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			if (metrics != null) {
+				metrics.recordRejection();
 			}
+			throw new RejectedExecutionException("Interrupted while awaiting room in the main thread queue", ex);
+		} finally {
+			if (metrics != null) {
+				metrics.recordProducerBlocked(System.nanoTime() - start);
+			}
+		}
+	}
+	
+	private void notifyBlockedProducers() {
+		if (blockedProducers != 0) {
+			capacityLock.lock();
+			try {
+				capacityAvailable.signalAll();
+			} finally {
+				capacityLock.unlock();
+			}
+		}
+	}
+	
+	@Override
+	public <T> CompletableFuture<Void> forEachOnMain(Iterable<T> elements, Consumer<? super T> action) {
+		return submitBulkJob(sharedOwner, BulkJob.forEach(elements, action));
+	}
+	
+	@Override
+	public <T, R> CompletableFuture<List<R>> mapOnMain(Iterable<T> elements, Function<? super T, ? extends R> mapper) {
+		return submitBulkJob(sharedOwner, BulkJob.map(elements, mapper));
+	}
+	
+	<R> CompletableFuture<R> submitBulkJob(OwnerQueue owner, BulkJob<?, R> job) {
+		if (isPrimaryThread()) {
+			bulkJobs.addLast(job);
+		} else {
+			// Not subject to the queue bound, since the registration must run on the main thread
+			offer(owner, job.registration(bulkJobs), Priority.NORMAL);
+		}
+		return job.future();
+	}
+	
+	@Override
+	public ScheduledTask schedule(Runnable command, long ticks) {
+		return schedule(sharedOwner, command, ticks, 0L);
+	}
+	
+	@Override
+	public ScheduledTask scheduleRepeating(Runnable command, long initialDelayTicks, long periodTicks) {
+		if (periodTicks <= 0L) {
+			throw new IllegalArgumentException("Period must be positive");
+		}
+		return schedule(sharedOwner, command, initialDelayTicks, periodTicks);
+	}
+	
+	ScheduledTask schedule(OwnerQueue owner, Runnable command, long delay, long period) {
+		Objects.requireNonNull(command, "command");
+		if (delay < 0L || delay > TimingWheel.MAX_DELAY || period > TimingWheel.MAX_DELAY) {
+			throw new IllegalArgumentException("Delay and period must be between 0 and " + TimingWheel.MAX_DELAY + " ticks");
+		}
+		ensureStarted();
+		WheelTimer timer = new WheelTimer(timers, owner, command, delay, period);
+		if (isPrimaryThread()) {
+			timers.schedule(timer);
+		} else {
+			timers.submit(timer);
+		}
+		return timer;
+	}
+	
+	@Override
+	public <T> Snapshot<T> snapshot(Object key, Supplier<T> supplier, RefreshPolicy policy) {
+		ensureStarted();
+		return snapshots.snapshot(key, supplier, policy, isPrimaryThread());
+	}
+	
+	/**
+	 * Gets the view through which the named owner submits tasks. The view is created if necessary,
+	 * and the owner's weight is updated.
+	 * 
+	 * @param name the owner name
+	 * @param weight the owner's weight, the amount of its tasks run per turn
+	 * @return the owner's view
+	 * @throws IllegalArgumentException if the weight is not positive
+	 */
+	DeadlockFree forOwner(String name, int weight) {
+		Objects.requireNonNull(name, "name");
+		if (weight <= 0) {
+			throw new IllegalArgumentException("Weight must be positive");
+		}
+		OwnerView view = ownerViews.computeIfAbsent(name, (n) -> {
+			OwnerQueue owner = new OwnerQueue(n, weight, queueChunkSize);
+			tasks.register(owner);
+			return new OwnerView(this, owner);
+		});
+		view.owner().setWeight(weight);
+		view.reopenAsync();
+		return view;
+	}
+	
+	private Map<String, OwnerUsage> ownerUsage() {
+		Map<String, OwnerUsage> usage = new HashMap<>();
+		for (OwnerQueue owner : tasks.owners()) {
+			usage.put(owner.name(), owner.usage());
+		}
+		return usage;
+	}
+	
+	@Override
+	public <T> T join(CompletableFuture<T> future) {
+		if (isPrimaryThread()) {
+			beginJoin(future);
+			try {
+				long parkNanos = UNREGISTERED;
+				if (joinDepth > maximumJoinDepth) {
+					parkNanos = registerSignal(future);
+					awaitPastMaximumDepth(future, parkNanos, 0L);
+				}
+				if (!future.isDone()) {
+					unleashUntil(future);
+					if (!future.isDone() && !spin(future)) {
+						if (parkNanos == UNREGISTERED) {
+							parkNanos = registerSignal(future);
+						}
+						while (!future.isDone()) {
+							awaitSignal(future, parkNanos);
+							unleashUntil(future);
+						}
+					}
+				}
+			} finally {
+				endJoin();
+			}
+		} else {
+			asyncPool.awaitIfPoolThread(future);
 		}
 		return future.join();
 	}
@@ -60,20 +692,36 @@ abstract class AbstractImplementation implements DeadlockFree {
 	@Override
 	public <T> T get(Future<T> future) throws InterruptedException, ExecutionException {
 		if (isPrimaryThread()) {
-			if (mainThread == null) {
-				mainThread = Thread.currentThread();
-			}
-			if (Thread.interrupted()) {
-				throw new InterruptedException();
-			}
-			unleash();
-			while (!future.isDone()) {
-				LockSupport.park();
+			beginJoin(future);
+			try {
 				if (Thread.interrupted()) {
 					throw new InterruptedException();
 				}
-				unleash();
+				long parkNanos = UNREGISTERED;
+				if (joinDepth > maximumJoinDepth) {
+					parkNanos = registerSignal(future);
+					awaitPastMaximumDepth(future, parkNanos, 0L);
+				}
+				if (!future.isDone()) {
+					unleashUntil(future);
+					if (!future.isDone() && !spin(future)) {
+						if (parkNanos == UNREGISTERED) {
+							parkNanos = registerSignal(future);
+						}
+						while (!future.isDone()) {
+							awaitSignal(future, parkNanos);
+							if (Thread.interrupted()) {
+								throw new InterruptedException();
+							}
+							unleashUntil(future);
+						}
+					}
+				}
+			} finally {
+				endJoin();
 			}
+		} else {
+			asyncPool.awaitIfPoolThread(future);
 		}
 		return future.get();
 	}
@@ -83,48 +731,491 @@ abstract class AbstractImplementation implements DeadlockFree {
 			throws InterruptedException, ExecutionException, TimeoutException {
 		if (isPrimaryThread()) {
 			long deadline = System.nanoTime() + unit.toNanos(timeout);
-			if (mainThread == null) {
-				mainThread = Thread.currentThread();
-			}
-			if (Thread.interrupted()) {
-				throw new InterruptedException();
-			}
-			unleashWithTimeout(deadline);
-			while (!future.isDone()) {
-				LockSupport.parkNanos(deadline - System.nanoTime());
+			beginJoin(future);
+			try {
 				if (Thread.interrupted()) {
 					throw new InterruptedException();
 				}
-				if (System.nanoTime() - deadline >= 0) {
-					throw new TimeoutException();
+				long parkNanos = UNREGISTERED;
+				if (joinDepth > maximumJoinDepth) {
+					parkNanos = registerSignal(future);
+					awaitPastMaximumDepth(future, parkNanos, deadline);
 				}
-				unleashWithTimeout(deadline);
+				if (!future.isDone()) {
+					unleashWithTimeout(future, deadline);
+					if (!future.isDone() && !spin(future)) {
+						if (parkNanos == UNREGISTERED) {
+							parkNanos = registerSignal(future);
+						}
+						while (!future.isDone()) {
+							long remaining = Math.max(1L, deadline - System.nanoTime());
+							awaitSignal(future, (parkNanos == 0L) ? remaining : Math.min(parkNanos, remaining));
+							if (Thread.interrupted()) {
+								throw new InterruptedException();
+							}
+							if (System.nanoTime() - deadline >= 0) {
+								throw new TimeoutException();
+							}
+							unleashWithTimeout(future, deadline);
+						}
+					}
+				}
+			} finally {
+				endJoin();
 			}
 			return future.get();
 
 		} else {
+			asyncPool.warnIfPoolThread(future);
 			return future.get(timeout, unit);
 		}
 	}
 	
+	@Override
+	public Executor async() {
+		return asyncScope.executor();
+	}
+	
+	@Override
+	public boolean shutdownAsync(long timeout, TimeUnit unit) throws InterruptedException {
+		return asyncScope.await(timeout, unit);
+	}
+	
+	AsyncPool asyncPool() {
+		return asyncPool;
+	}
+	
+	/**
+	 * Marks the main thread as awaiting a future, for stall sampling and join depth tracking.
+	 * Queued tasks which the future awaits are promoted to run next. Must be followed by {@link #endJoin()}.
+	 * 
+	 * @param future the future awaited
+	 */
+	private void beginJoin(Future<?> future) {
+		setMainThread();
+		if (future instanceof PromotableFuture) {
+			((PromotableFuture) future).forEachPromotable(tasks::promote);
+		}
+		StallSampler stallSampler = this.stallSampler;
+		if (stallSampler != null) {
+			stallSampler.beginWait(future);
+		}
+		int depth = ++joinDepth;
+		Metrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.recordJoinDepth(depth);
+		}
+	}
+	
+	private void endJoin() {
+		joinDepth--;
+		StallSampler stallSampler = this.stallSampler;
+		if (stallSampler != null) {
+			stallSampler.endWait();
+		}
+	}
+	
+	/**
+	 * Called when joins are nested beyond the maximum depth. Waits for the future without running tasks,
+	 * so that the stack stops growing. Since the future may depend on a queued task, waiting is
+	 * limited to a grace period, after which the caller must run tasks as usual.
+	 * 
+	 * @param future the future awaited
+	 * @param parkNanos the result of {@link #registerSignal(Future)}
+	 * @param deadline the nano time at which the caller times out, or 0 if none
+	 */
+	private void awaitPastMaximumDepth(Future<?> future, long parkNanos, long deadline) {
+		TickBudget budget = tickBudget;
+		long grace = NESTED_JOIN_GRACE_NANOS;
+		if (!budget.isUnlimited()) {
+			grace = Math.min(grace, budget.getNanosPerTick());
+		}
+		long graceEnd = System.nanoTime() + grace;
+		if (deadline != 0L) {
+			graceEnd = earlier(graceEnd, deadline);
+		}
+		while (!future.isDone()) {
+			long remaining = graceEnd - System.nanoTime();
+			if (remaining <= 0L || Thread.currentThread().isInterrupted()) {
+				Metrics metrics = this.metrics;
+				if (metrics != null) {
+					metrics.recordJoinDepthEscape();
+				}
+				return;
+			}
+			// Unlike awaitSignal, park even if tasks are queued
+			waitState.prepareWait();
+			if (!future.isDone()) {
+				park(true, (parkNanos == 0L) ? remaining : Math.min(parkNanos, remaining));
+			}
+			waitState.endWait();
+		}
+	}
+	
+	private void setMainThread() {
+		if (mainThread == null) {
+			mainThread = Thread.currentThread();
+			mainThreadIdentified();
+		}
+	}
+	
+	/**
+	 * Called on the main thread once it is identified, when it first ticks or awaits a future
+	 * 
+	 */
+	void mainThreadIdentified() {
+		
+	}
+	
+	/**
+	 * Called on the main thread at the start of each tick, once due tasks have run
+	 * 
+	 */
+	void afterTick() {
+		
+	}
+	
+	/**
+	 * Whether nothing is queued, scheduled or cached. Must only be called on the main thread.
+	 * 
+	 * @return true if idle
+	 */
+	boolean isIdle() {
+		return tasks.size() == 0L && bulkJobs.isEmpty() && timers.isEmpty() && snapshots.isEmpty();
+	}
+	
+	/**
+	 * Whether the current thread is the thread which ticks this implementation.
+	 * Unlike {@link #isPrimaryThread()}, does not consult the platform.
+	 * 
+	 * @return true if the current thread has been identified as the main thread
+	 */
+	boolean isMainThread() {
+		return Thread.currentThread() == mainThread;
+	}
+	
+	/**
+	 * Briefly spins, running tasks meanwhile, in the hope the future completes soon.
+	 * Adapts the spin duration according to whether spinning has recently been successful.
+	 * 
+	 * @param future the future awaited
+	 * @return true if the future completed, false if the main thread should park
+	 */
+	private boolean spin(Future<?> future) {
+		int spinLimit = this.spinLimit;
+		for (int n = 0; n < spinLimit; n++) {
+			if (future.isDone()) {
+				this.spinLimit = Math.min(spinLimit * 2, MAX_SPINS);
+				return true;
+			}
+			if (!runNext()) {
+				SpinWait.onSpinWait();
+			}
+		}
+		this.spinLimit = Math.max(spinLimit / 2, MIN_SPINS);
+		return false;
+	}
+	
+	/**
+	 * Arranges for the main thread to be signalled when the future completes, if possible
+	 * 
+	 * @param future the future awaited
+	 * @return 0 if signalling was arranged, otherwise the interval at which to poll the future
+	 */
+	private long registerSignal(Future<?> future) {
+		if (future instanceof CompletableFuture) {
+			((CompletableFuture<?>) future).whenComplete(signaller);
+			return 0L;
+		}
+		return POLL_NANOS;
+	}
+	
 	/**
-	 * Runs all scheduled tasks. Should only be called on main thread.
+	 * Parks the main thread until signalled, unless there are queued tasks or the future is done
+	 * 
+	 * @param future the future awaited, or null if idle
+	 * @param nanos the maximum time to park, or 0 to park until signalled
+	 */
+	private void awaitSignal(Future<?> future, long nanos) {
+		waitState.prepareWait();
+		if ((future == null || !future.isDone()) && tasks.isEmpty() && bulkJobs.isEmpty()) {
+			park(future != null, nanos);
+		}
+		waitState.endWait();
+	}
+	
+	@Override
+	public void setTickBudget(TickBudget budget) {
+		tickBudget = Objects.requireNonNull(budget, "budget");
+	}
+	
+	@Override
+	public void setMaximumJoinDepth(int depth) {
+		if (depth <= 0) {
+			throw new IllegalArgumentException("Maximum join depth must be positive");
+		}
+		maximumJoinDepth = depth;
+	}
+	
+	@Override
+	public TickStats getLastTickStats() {
+		return lastTickStats;
+	}
+	
+	@Override
+	public void setQueueBound(QueueBound bound) {
+		Objects.requireNonNull(bound, "bound");
+		if (bound.getPolicy() == OverflowPolicy.DROP_OLDEST) {
+			tasks.enableRemoval();
+		}
+		queueBound = bound;
+		notifyBlockedProducers();
+	}
+	
+	@Override
+	public synchronized void setMetricsEnabled(boolean enabled) {
+		Metrics metrics = this.metrics;
+		if (enabled && metrics == null) {
+			metrics = new Metrics(tasks::size, this::ownerUsage);
+			metrics.registerMBean();
+			this.metrics = metrics;
+
+		} else if (!enabled && metrics != null) {
+			this.metrics = null;
+			metrics.unregisterMBean();
+		}
+	}
+	
+	@Override
+	public DeadlockFreeMetrics getMetrics() {
+		return metrics;
+	}
+	
+	@Override
+	public synchronized void setStallWatchdog(StallWatchdog watchdog) {
+		Objects.requireNonNull(watchdog, "watchdog");
+		StallSampler previous = stallSampler;
+		if (previous != null) {
+			previous.stop();
+		}
+		stallSampler = (watchdog.isDisabled()) ? null : new StallSampler(watchdog, () -> mainThread);
+	}
+	
+	/**
+	 * Parks the main thread
+	 * 
+	 * @param joining whether awaiting a future, for metrics purposes
+	 * @param nanos the maximum time to park, or 0 to park indefinitely
+	 */
+	private void park(boolean joining, long nanos) {
+		Metrics metrics = (joining) ? this.metrics : null;
+		long start = (metrics == null) ? 0L : System.nanoTime();
+		if (nanos == 0L) {
+			LockSupport.park();
+		} else {
+			LockSupport.parkNanos(nanos);
+		}
+		if (metrics != null) {
+			metrics.recordJoinWait(System.nanoTime() - start);
+		}
+	}
+	
+	private void recordQueueDepth() {
+		Metrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.recordQueueDepth(tasks.size());
+		}
+	}
+	
+	/**
+	 * Polls and runs a single task. Should only be called on main thread.
+	 * 
+	 * @return true if a task was run, false if there was none
+	 */
+	private boolean runNext() {
+		Runnable task = tasks.poll();
+		if (task == null) {
+			return false;
+		}
+		notifyBlockedProducers();
+		StallSampler stallSampler = this.stallSampler;
+		if (stallSampler == null) {
+			runTask(task);
+		} else {
+			Object previous = stallSampler.beginTask(task);
+			try {
+				runTask(task);
+			} finally {
+				stallSampler.endTask(previous);
+			}
+		}
+		return true;
+	}
+	
+	private void runTask(Runnable task) {
+		Metrics metrics = this.metrics;
+		if (metrics == null) {
+			task.run();
+		} else {
+			// Read before running, since the task may run further tasks by joining
+			long queuedAt = tasks.polledStamp();
+			OwnerQueue owner = tasks.polledOwner();
+			long start = System.nanoTime();
+			try {
+				task.run();
+			} finally {
+				long finish = System.nanoTime();
+				metrics.recordTask(queuedAt, start, finish);
+				owner.recordTask(finish - start);
+			}
+		}
+	}
+	
+	/**
+	 * Runs scheduled tasks within the tick budget. Should be called on the main thread once per tick.
 	 * 
 	 */
 	void unleash() {
-		Runnable toRun;
-		while ((toRun = tasks.poll()) != null) {
-			toRun.run();
+		TickBudget budget = tickBudget;
+		long start = System.nanoTime();
+		int ran = 0;
+		// Only tasks left queued because the budget ran out
+		long deferred = 0L;
+		recordQueueDepth();
+		try {
+			if (budget.isUnlimited()) {
+				while (runNext()) {
+					ran++;
+				}
+				runBulkJobs(System.nanoTime() + budget.getBulkSliceNanos());
+			} else {
+				long deadline = start + budget.getNanosPerTick();
+				int minimumTasks = budget.getMinimumTasks();
+				while (runNext()) {
+					ran++;
+					if (ran >= minimumTasks && System.nanoTime() - deadline >= 0) {
+						deferred = tasks.size();
+						break;
+					}
+				}
+				runBulkJobs(earlier(System.nanoTime() + budget.getBulkSliceNanos(), deadline));
+			}
+		} finally {
+			lastTickStats = new TickStats(ran, deferred, System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Runs scheduled tasks regardless of the tick budget, until the future awaited is done.
+	 * Should only be called on main thread.
+	 * 
+	 * @param future the future awaited
+	 */
+	private void unleashUntil(Future<?> future) {
+		recordQueueDepth();
+		long start = nestedDrainStart();
+		try {
+			while (!future.isDone() && runNext()) {
+				// Keep running
+			}
+			if (!future.isDone()) {
+				runBulkJobs(System.nanoTime() + tickBudget.getBulkSliceNanos());
+			}
+		} finally {
+			recordNestedDrain(start);
+		}
+	}
+	
+	/**
+	 * Gets the start time of a drain, for metrics on drains within nested joins
+	 * 
+	 * @return the nano time, or 0 if not nested or metrics are disabled
+	 */
+	private long nestedDrainStart() {
+		return (joinDepth > 1 && metrics != null) ? System.nanoTime() : 0L;
+	}
+	
+	private void recordNestedDrain(long start) {
+		if (start != 0L) {
+			Metrics metrics = this.metrics;
+			if (metrics != null) {
+				metrics.recordNestedDrain(System.nanoTime() - start);
+			}
+		}
+	}
+	
+	/**
+	 * Gives each active bulk job an equal share of the time until the deadline.
+	 * Each job processes at least one element. Should only be called on main thread.
+	 * 
+	 * @param deadline the nano time at which to stop
+	 */
+	private void runBulkJobs(long deadline) {
+		int count = bulkJobs.size();
+		for (int n = 0; n < count; n++) {
+			BulkJob<?, ?> job = bulkJobs.pollFirst();
+			if (job == null) {
+				// An element action joined, and the nested drain finished the remaining jobs
+				break;
+			}
+			long now = System.nanoTime();
+			long share = Math.max(0L, (deadline - now) / (count - n));
+			if (!job.step(now + share)) {
+				bulkJobs.addLast(job);
+			}
+		}
+	}
+	
+	private static long earlier(long nanoTime1, long nanoTime2) {
+		return (nanoTime1 - nanoTime2 < 0) ? nanoTime1 : nanoTime2;
+	}
+	
+	/**
+	 * Runs scheduled tasks, including those arriving meanwhile, until the deadline.
+	 * Used to make use of the time between ticks. Should only be called on main thread. <br>
+	 * <br>
+	 * Returns early once no task has arrived for {@link #IDLE_WAIT_NANOS}, so that the server
+	 * may do its own work between ticks, such as handling packets.
+	 * 
+	 * @param deadline the nano time at which to stop
+	 */
+	void unleashIdle(long deadline) {
+		setMainThread();
+		recordQueueDepth();
+		boolean waited = false;
+		while (System.nanoTime() - deadline < 0) {
+			if (runNext()) {
+				waited = false;
+				continue;
+			}
+			if (!bulkJobs.isEmpty()) {
+				runBulkJobs(earlier(System.nanoTime() + tickBudget.getBulkSliceNanos(), deadline));
+				waited = false;
+				continue;
+			}
+			if (waited || Thread.currentThread().isInterrupted()) {
+				// Idle, or parkNanos would return immediately
+				return;
+			}
+			awaitSignal(null, Math.max(1L, earlier(System.nanoTime() + IDLE_WAIT_NANOS, deadline) - System.nanoTime()));
+			waited = true;
 		}
 	}
 	
-	private void unleashWithTimeout(long deadline) throws TimeoutException {
-		Runnable toRun;
-		while ((toRun = tasks.poll()) != null) {
-			toRun.run();
-			if (System.nanoTime() - deadline >= 0) {
-				throw new TimeoutException();
+	private void unleashWithTimeout(Future<?> future, long deadline) throws TimeoutException {
+		recordQueueDepth();
+		long start = nestedDrainStart();
+		try {
+			while (!future.isDone() && runNext()) {
+				if (System.nanoTime() - deadline >= 0) {
+					throw new TimeoutException();
+				}
+			}
+			if (!future.isDone()) {
+				runBulkJobs(earlier(System.nanoTime() + tickBudget.getBulkSliceNanos(), deadline));
 			}
+		} finally {
+			recordNestedDrain(start);
 		}
 	}
 
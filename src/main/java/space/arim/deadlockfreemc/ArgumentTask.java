@@ -0,0 +1,100 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A recyclable task holding a function and its arguments, so that queueing a call
+ * does not allocate a capturing lambda. Obtained from an {@link ArgumentTaskPool},
+ * to which the task returns itself once run or discarded.
+ * 
+ * @author A248
+ * 
+ */
+final class ArgumentTask implements Discardable {
+
+	private final ArgumentTaskPool pool;
+	
+	/*
+	 * Written by the producer before the task is queued, read by the main thread after it is polled
+	 */
+	private Object action;
+	private Object first;
+	private Object second;
+	private boolean binary;
+	
+	ArgumentTask(ArgumentTaskPool pool) {
+		this.pool = pool;
+	}
+	
+	void set(Consumer<?> action, Object argument) {
+		this.action = action;
+		first = argument;
+		binary = false;
+	}
+	
+	void set(BiConsumer<?, ?> action, Object first, Object second) {
+		this.action = action;
+		this.first = first;
+		this.second = second;
+		binary = true;
+	}
+	
+	/**
+	 * Gets the action, for diagnostic purposes. Must be read before the task runs, since it is
+	 * recycled as it runs. Racy if read by a thread other than the main thread
+	 * 
+	 * @return the action, or null if the task is pooled
+	 */
+	Object action() {
+		return action;
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public void run() {
+		Object action = this.action;
+		Object first = this.first;
+		Object second = this.second;
+		boolean binary = this.binary;
+		// Recycle before running, so the task is not lost if the action throws
+		recycle();
+		if (binary) {
+			((BiConsumer<Object, Object>) action).accept(first, second);
+		} else {
+			((Consumer<Object>) action).accept(first);
+		}
+	}
+	
+	@Override
+	public void discard() {
+		recycle();
+	}
+	
+	private void recycle() {
+		// Do not retain the arguments while pooled
+		action = null;
+		first = null;
+		second = null;
+		pool.release(this);
+	}
+
+}
@@ -0,0 +1,119 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pool of {@link ArgumentTask}s, kept in a bounded ring buffer of recycled slots. <br>
+ * <br>
+ * The ring is a multi-producer, multi-consumer array queue in the manner of Vyukov: each slot
+ * carries a sequence number telling whether it is ready to be acquired or released into, so
+ * that neither operation allocates or locks. The ring starts empty. Tasks are created while
+ * the ring is empty, and dropped if released while it is full, so that once enough tasks are
+ * in circulation, acquiring and releasing allocate nothing.
+ * 
+ * @author A248
+ * 
+ */
+final class ArgumentTaskPool {
+
+	static final int DEFAULT_CAPACITY = 1024;
+	
+	private final int mask;
+	private final AtomicReferenceArray<ArgumentTask> slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong acquirePosition = new AtomicLong();
+	private final AtomicLong releasePosition = new AtomicLong();
+	
+	ArgumentTaskPool() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	ArgumentTaskPool(int capacity) {
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a positive power of 2");
+		}
+		mask = capacity - 1;
+		slots = new AtomicReferenceArray<>(capacity);
+		sequences = new AtomicLongArray(capacity);
+		for (int n = 0; n < capacity; n++) {
+			sequences.set(n, n);
+		}
+	}
+	
+	/**
+	 * Takes a task from the pool, or creates one if the pool is empty. May be called from any thread.
+	 * 
+	 * @return the task
+	 */
+	ArgumentTask acquire() {
+		long position = acquirePosition.get();
+		for (;;) {
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - (position + 1);
+			if (difference == 0L) {
+				if (acquirePosition.compareAndSet(position, position + 1)) {
+					ArgumentTask task = slots.get(index);
+					slots.lazySet(index, null);
+					// Frees the slot for the release one lap later
+					sequences.set(index, position + mask + 1);
+					return task;
+				}
+				position = acquirePosition.get();
+			} else if (difference < 0L) {
+				// Empty
+				return new ArgumentTask(this);
+			} else {
+				// Another thread acquired this position
+				position = acquirePosition.get();
+			}
+		}
+	}
+	
+	/**
+	 * Returns a task to the pool, or drops it if the pool is full. May be called from any thread.
+	 * 
+	 * @param task the task
+	 */
+	void release(ArgumentTask task) {
+		long position = releasePosition.get();
+		for (;;) {
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if (difference == 0L) {
+				if (releasePosition.compareAndSet(position, position + 1)) {
+					slots.lazySet(index, task);
+					// Publishes the task to acquiring threads
+					sequences.set(index, position + 1);
+					return;
+				}
+				position = releasePosition.get();
+			} else if (difference < 0L) {
+				// Full
+				return;
+			} else {
+				position = releasePosition.get();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The async worker pool returned by {@link DeadlockFree#async()}, a work-stealing {@link ForkJoinPool}
+ * created when first used. <br>
+ * <br>
+ * The pool leaves one processor for the main thread. Pool threads which block awaiting a future,
+ * through {@code join} or {@code get}, are warned about, and block through
+ * {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)} so that the pool may compensate.
+ * 
+ * @author A248
+ * 
+ */
+final class AsyncPool {
+
+	private static final Logger LOGGER = Logger.getLogger(AsyncPool.class.getName());
+	private static final long WARNING_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1L);
+	
+	private volatile ForkJoinPool pool;
+	private volatile boolean shutdown;
+	private final AtomicLong lastWarning = new AtomicLong(System.nanoTime() - WARNING_INTERVAL_NANOS);
+	
+	Executor executor() {
+		ForkJoinPool pool = this.pool;
+		if (pool == null) {
+			return createPool();
+		}
+		if (shutdown) {
+			throw new RejectedExecutionException("Async pool has been shut down");
+		}
+		return pool;
+	}
+	
+	private synchronized ForkJoinPool createPool() {
+		if (shutdown) {
+			throw new RejectedExecutionException("Async pool has been shut down");
+		}
+		ForkJoinPool pool = this.pool;
+		if (pool == null) {
+			int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			AtomicInteger threadIds = new AtomicInteger();
+			pool = new ForkJoinPool(parallelism, (forkJoinPool) -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+				thread.setName("DeadlockFreeMC-Async-" + threadIds.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}, null, true);
+			this.pool = pool;
+		}
+		return pool;
+	}
+	
+	/**
+	 * Whether the current thread belongs to this pool
+	 * 
+	 * @return true if a pool thread
+	 */
+	private boolean isPoolThread() {
+		Thread thread = Thread.currentThread();
+		return thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool;
+	}
+	
+	/**
+	 * If the current thread is a pool thread and the future is not done, warns and
+	 * waits for the future in a manner which lets the pool compensate
+	 * 
+	 * @param future the future about to be awaited
+	 */
+	void awaitIfPoolThread(Future<?> future) {
+		if (future.isDone() || !isPoolThread()) {
+			return;
+		}
+		warnBlocking();
+		try {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+			
+				@Override
+				public boolean block() throws InterruptedException {
+					try {
+						future.get();
+					} catch (ExecutionException ignored) {
+						// Reported by the caller
+					}
+					return true;
+				}
+				
+				@Override
+				public boolean isReleasable() {
+					return future.isDone();
+				}
+			});
+		} catch (InterruptedException ex) {
+			// The caller awaits the future again, and decides how to handle interruption
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Warns if the current thread is a pool thread awaiting an incomplete future
+	 * 
+	 * @param future the future about to be awaited
+	 */
+	void warnIfPoolThread(Future<?> future) {
+		if (!future.isDone() && isPoolThread()) {
+			warnBlocking();
+		}
+	}
+	
+	private void warnBlocking() {
+		long now = System.nanoTime();
+		long last = lastWarning.get();
+		// At most once per interval, since the same code is likely to block repeatedly
+		if (now - last >= WARNING_INTERVAL_NANOS && lastWarning.compareAndSet(last, now)) {
+			LOGGER.log(Level.WARNING, "An async pool thread is blocking to await a future. "
+					+ "Prefer composing futures, such as with thenApply, to keep pool threads free.", new Throwable("Blocked here"));
+		}
+	}
+	
+	/**
+	 * Shuts down the pool without waiting
+	 * 
+	 * @return the pool, or null if it was never created
+	 */
+	ForkJoinPool initiateShutdown() {
+		ForkJoinPool pool;
+		synchronized (this) {
+			shutdown = true;
+			pool = this.pool;
+		}
+		if (pool != null) {
+			pool.shutdown();
+		}
+		return pool;
+	}
+
+}
@@ -0,0 +1,135 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The async executor of a single instance or owner. Counts the tasks it submits to the
+ * {@link AsyncPool}, so that they can be awaited without shutting down the pool, which is shared.
+ * 
+ * @author A248
+ * 
+ */
+final class AsyncScope implements Executor {
+
+	private final AsyncPool pool;
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile boolean closed;
+	/**
+	 * Set once a thread awaits pending tasks, so that finishing tasks need not notify otherwise
+	 * 
+	 */
+	private volatile boolean awaited;
+	
+	AsyncScope(AsyncPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * Gets this executor, creating the pool if necessary
+	 * 
+	 * @return this executor
+	 * @throws RejectedExecutionException if this scope is closed, or the pool shut down
+	 */
+	Executor executor() {
+		if (closed) {
+			throw new RejectedExecutionException("Async tasks are no longer accepted from this instance");
+		}
+		pool.executor();
+		return this;
+	}
+	
+	boolean isClosed() {
+		return closed;
+	}
+	
+	@Override
+	public void execute(Runnable command) {
+		Objects.requireNonNull(command, "command");
+		Executor executor = pool.executor();
+		pending.incrementAndGet();
+		// Checked after counting, so that close never misses a task it must await
+		if (closed) {
+			finished();
+			throw new RejectedExecutionException("Async tasks are no longer accepted from this instance");
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					command.run();
+				} finally {
+					finished();
+				}
+			});
+		} catch (RuntimeException | Error ex) {
+			finished();
+			throw ex;
+		}
+	}
+	
+	private void finished() {
+		if (pending.decrementAndGet() == 0 && awaited) {
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Waits for tasks already submitted to complete
+	 * 
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return true if all tasks completed, false if the timeout elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (this) {
+			awaited = true;
+			while (pending.get() != 0) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0L) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Rejects further tasks, then waits for tasks already submitted to complete
+	 * 
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return true if all tasks completed, false if the timeout elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+		closed = true;
+		return await(timeout, unit);
+	}
+
+}
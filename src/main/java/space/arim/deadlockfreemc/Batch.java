@@ -0,0 +1,77 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Collects commands to be run on the main thread together, as a unit. Obtained through
+ * {@link DeadlockFree#batch()}. <br>
+ * <br>
+ * Once {@link #submit()} is called, the batch is empty and may be reused. This class is not thread safe;
+ * a batch is intended to be filled and submitted by a single thread.
+ * 
+ * @author A248
+ * 
+ */
+public final class Batch {
+
+	private final DeadlockFree executor;
+	private final List<Runnable> commands = new ArrayList<>();
+	
+	Batch(DeadlockFree executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Adds a command to this batch
+	 * 
+	 * @param command the command
+	 * @return this batch
+	 */
+	public Batch add(Runnable command) {
+		commands.add(Objects.requireNonNull(command, "command"));
+		return this;
+	}
+	
+	/**
+	 * Gets the amount of commands in this batch
+	 * 
+	 * @return the amount of commands
+	 */
+	public int size() {
+		return commands.size();
+	}
+	
+	/**
+	 * Submits the commands in this batch, as if by {@link DeadlockFree#executeAll(java.util.Collection)},
+	 * and empties this batch.
+	 * 
+	 */
+	public void submit() {
+		if (commands.isEmpty()) {
+			return;
+		}
+		executor.executeAll(commands);
+		commands.clear();
+	}
+
+}
@@ -0,0 +1,56 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * Several commands queued as a single task, run in order without interleaving. <br>
+ * If a command throws an exception, the remaining commands still run, after which
+ * the first exception is rethrown.
+ * 
+ * @author A248
+ * 
+ */
+final class BatchTask implements Runnable {
+
+	private final Runnable[] commands;
+	
+	BatchTask(Runnable[] commands) {
+		this.commands = commands;
+	}
+	
+	@Override
+	public void run() {
+		RuntimeException failure = null;
+		for (Runnable command : commands) {
+			try {
+				command.run();
+			} catch (RuntimeException ex) {
+				if (failure == null) {
+					failure = ex;
+				} else {
+					failure.addSuppressed(ex);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+}
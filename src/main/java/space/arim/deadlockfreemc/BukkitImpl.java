@@ -18,39 +18,70 @@
  */
 package space.arim.deadlockfreemc;
 
+import java.util.function.Supplier;
+
 import org.bukkit.Bukkit;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.Listener;
 import org.bukkit.plugin.Plugin;
 
 /**
  * Implementation on Bukkit, Spigot, or Paper. If Paper is detected,
- * uses the ServerTickStartEvent. Else uses a repeating task with a 1-tick period.
- * 
+ * uses the ServerTickStartEvent and ServerTickEndEvent. Else uses a repeating task with a 1-tick period.
+
  * @author A248
  *
  */
 class BukkitImpl extends AbstractImplementation {
 	
-	BukkitImpl(Plugin pluginToUse) {
-		try {
-			Class.forName("com.destroystokyo.paper.event.server.ServerTickStartEvent");
-			Bukkit.getPluginManager().registerEvents(new Listener() {
-				@SuppressWarnings("unused")
-				@EventHandler
-				public void doTick(com.destroystokyo.paper.event.server.ServerTickStartEvent evt) {
-					unleash();
-				}
-			}, pluginToUse);
-
-		} catch (ClassNotFoundException tickStartEventUnsupported) {
-			Bukkit.getScheduler().runTaskTimer(pluginToUse, this::unleash, 0L, 1L);
+	/**
+	 * Null to use any enabled plugin
+	 * 
+	 */
+	private final Plugin plugin;
+	
+	BukkitImpl(Plugin plugin, Supplier<? extends TickSource> tickSources, int queueChunkSize) {
+		super(tickSources, new AsyncPool(), queueChunkSize);
+		this.plugin = plugin;
+	}
+	
+	/**
+	 * Creates the implementation. The tick source, if not specified, is created once ticking starts.
+	 * 
+	 * @param plugin the plugin with which to register listeners or tasks, or null to use any enabled plugin
+	 * @param tickSource the tick source, or null to use the best for the running server
+	 * @param queueChunkSize the chunk size of task queues
+	 * @return the implementation
+	 */
+	static BukkitImpl create(Plugin plugin, TickSource tickSource, int queueChunkSize) {
+		if (tickSource != null) {
+			return new BukkitImpl(plugin, () -> tickSource, queueChunkSize);
 		}
+		return new BukkitImpl(plugin, () -> BukkitTickSource.create(orAnyEnabledPlugin(plugin)), queueChunkSize);
+	}
+	
+	private static Plugin orAnyEnabledPlugin(Plugin plugin) {
+		if (plugin != null) {
+			return plugin;
+		}
+		for (Plugin candidate : Bukkit.getPluginManager().getPlugins()) {
+			if (candidate.isEnabled()) {
+				return candidate;
+			}
+		}
+		throw new IllegalStateException("No enabled plugin with which to register tasks. Specify one through DeadlockFree.builder()");
 	}
 	
 	@Override
 	public boolean isPrimaryThread() {
 		return Bukkit.isPrimaryThread();
 	}
+	
+	@Override
+	void runOnPrimaryThread(Runnable command) {
+		if (isPrimaryThread()) {
+			command.run();
+		} else {
+			Bukkit.getScheduler().runTask(orAnyEnabledPlugin(plugin), command);
+		}
+	}
 
 }
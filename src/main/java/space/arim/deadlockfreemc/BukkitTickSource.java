@@ -0,0 +1,66 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Tick source on Bukkit or Spigot. Uses a repeating task with a 1-tick period.
+ * 
+ * @author A248
+ * 
+ */
+class BukkitTickSource implements TickSource {
+
+	private final Plugin plugin;
+	private volatile BukkitTask task;
+	
+	BukkitTickSource(Plugin plugin) {
+		this.plugin = plugin;
+	}
+	
+	/**
+	 * Creates the best tick source for the running server. If Paper is detected,
+	 * uses the {@link PaperTickSource}. Else uses a repeating task.
+	 * 
+	 * @param plugin the plugin with which to register listeners or tasks
+	 * @return the tick source
+	 */
+	static TickSource create(Plugin plugin) {
+		try {
+			Class.forName("com.destroystokyo.paper.event.server.ServerTickEndEvent");
+			return new PaperTickSource(plugin);
+		} catch (ClassNotFoundException tickEventsUnsupported) {
+			return new BukkitTickSource(plugin);
+		}
+	}
+	
+	@Override
+	public void start(Callback callback) {
+		task = Bukkit.getScheduler().runTaskTimer(plugin, callback::onTickStart, 0L, 1L);
+	}
+	
+	@Override
+	public void stop() {
+		task.cancel();
+	}
+
+}
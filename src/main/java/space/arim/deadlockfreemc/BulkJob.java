@@ -0,0 +1,135 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Applies an action to each element of a collection on the main thread, a slice at a time,
+ * resuming where it left off on the next tick. Cancelling the future stops the job.
+ * 
+ * @author A248
+ * 
+ * @param <T> the element type
+ * @param <R> the result type
+ */
+final class BulkJob<T, R> {
+
+	private final Iterable<T> elements;
+	private final Consumer<? super T> action;
+	private final Supplier<R> result;
+	private final CompletableFuture<R> future = new CompletableFuture<>();
+	
+	/*
+	 * Main thread only
+	 */
+	private Iterator<T> iterator;
+	
+	private BulkJob(Iterable<T> elements, Consumer<? super T> action, Supplier<R> result) {
+		this.elements = elements;
+		this.action = action;
+		this.result = result;
+	}
+	
+	static <T> BulkJob<T, Void> forEach(Iterable<T> elements, Consumer<? super T> action) {
+		return new BulkJob<>(elements, action, () -> null);
+	}
+	
+	static <T, R> BulkJob<T, List<R>> map(Iterable<T> elements, Function<? super T, ? extends R> mapper) {
+		List<R> results = new ArrayList<>();
+		return new BulkJob<>(elements, (element) -> results.add(mapper.apply(element)), () -> results);
+	}
+	
+	CompletableFuture<R> future() {
+		return future;
+	}
+	
+	/**
+	 * Creates a task which, run on the main thread, adds this job to the active jobs.
+	 * If the task is instead dropped, the job completes exceptionally.
+	 * 
+	 * @param activeJobs the active jobs
+	 * @return the registration task
+	 */
+	Discardable registration(Deque<BulkJob<?, ?>> activeJobs) {
+		return new Discardable() {
+			
+			@Override
+			public void run() {
+				activeJobs.addLast(BulkJob.this);
+			}
+			
+			@Override
+			public void discard() {
+				future.completeExceptionally(new RejectedExecutionException("Dropped from the full main thread queue"));
+			}
+		};
+	}
+	
+	/**
+	 * Processes elements until the deadline. At least one element is processed,
+	 * so that the job always makes progress. Must only be called on the main thread.
+	 * 
+	 * @param deadline the nano time at which to stop
+	 * @return true if the job is finished, false if there are remaining elements
+	 */
+	boolean step(long deadline) {
+		if (future.isDone()) {
+			// Cancelled
+			return true;
+		}
+		try {
+			if (iterator == null) {
+				iterator = elements.iterator();
+			}
+			do {
+				if (!iterator.hasNext()) {
+					future.complete(result.get());
+					return true;
+				}
+				action.accept(iterator.next());
+			} while (System.nanoTime() - deadline < 0);
+			return false;
+		
+		} catch (RuntimeException ex) {
+			future.completeExceptionally(ex);
+			return true;
+		}
+	}
+	
+	/**
+	 * Processes all elements at once
+	 * 
+	 */
+	void runFully() {
+		while (!step(System.nanoTime() + TimeUnit.SECONDS.toNanos(1L))) {
+			// Keep going
+		}
+	}
+
+}
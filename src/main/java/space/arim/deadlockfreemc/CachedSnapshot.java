@@ -0,0 +1,185 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * A snapshot in a {@link SnapshotCache}. The value is written only on the main thread,
+ * and published through a volatile reference.
+ * 
+ * @author A248
+ * 
+ * @param <T> the type of the value
+ */
+final class CachedSnapshot<T> implements Snapshot<T> {
+
+	private final SnapshotCache cache;
+	private final Object key;
+	private final Supplier<T> supplier;
+	private final RefreshPolicy policy;
+	
+	private volatile Value<T> value;
+	/**
+	 * 1 if invalidated and not yet refreshed, 0 otherwise. Set through {@link #INVALIDATED_UPDATER}
+	 * so that only one refresh is queued however many readers invalidate at once
+	 * 
+	 */
+	private volatile int invalidated;
+	/**
+	 * The tick at which the snapshot was last read. Written at most once per tick by each reader
+	 * 
+	 */
+	private volatile long lastRead;
+	
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<CachedSnapshot> INVALIDATED_UPDATER =
+			AtomicIntegerFieldUpdater.newUpdater(CachedSnapshot.class, "invalidated");
+	
+	CachedSnapshot(SnapshotCache cache, Object key, Supplier<T> supplier, RefreshPolicy policy) {
+		this.cache = cache;
+		this.key = key;
+		this.supplier = supplier;
+		this.policy = policy;
+		lastRead = cache.currentTick();
+	}
+	
+	Object key() {
+		return key;
+	}
+	
+	RefreshPolicy policy() {
+		return policy;
+	}
+	
+	long lastRead() {
+		return lastRead;
+	}
+	
+	boolean isInvalidated() {
+		return invalidated != 0;
+	}
+	
+	/**
+	 * Whether this snapshot has a value. Unlike {@link #isPresent()}, does not count as a read
+	 * 
+	 * @return true if computed
+	 */
+	boolean hasValue() {
+		return value != null;
+	}
+	
+	void markRead() {
+		long tick = cache.currentTick();
+		if (lastRead != tick) {
+			lastRead = tick;
+		}
+	}
+	
+	@Override
+	public T get() {
+		Value<T> value = live().value;
+		return (value == null) ? null : value.value;
+	}
+	
+	@Override
+	public boolean isPresent() {
+		return live().value != null;
+	}
+	
+	@Override
+	public void invalidate() {
+		live().markInvalidated();
+	}
+	
+	private void markInvalidated() {
+		if (INVALIDATED_UPDATER.compareAndSet(this, 0, 1)) {
+			cache.refreshSoon(this);
+		}
+	}
+	
+	/**
+	 * Marks this snapshot read, and gets the snapshot to use in its place. If this snapshot was
+	 * evicted, it is added back so that it resumes refreshing. If another snapshot with the same key
+	 * was created meanwhile, that snapshot is used instead, since this one no longer refreshes.
+	 * 
+	 * @return the live snapshot for this key
+	 */
+	@SuppressWarnings("unchecked")
+	private CachedSnapshot<T> live() {
+		markRead();
+		if (cache.isActive(this)) {
+			return this;
+		}
+		CachedSnapshot<?> live = cache.activate(this);
+		if (live != this) {
+			live.markRead();
+			return (CachedSnapshot<T>) live;
+		}
+		// Not refreshed while evicted, so the value may be long outdated
+		markInvalidated();
+		return this;
+	}
+	
+	/**
+	 * Recomputes the value. Must only be called on the main thread. If the supplier
+	 * throws an exception, the previous value is kept.
+	 * 
+	 */
+	void refresh() {
+		invalidated = 0;
+		T computed;
+		try {
+			computed = supplier.get();
+		} catch (RuntimeException ex) {
+			// Keep the previous value, and let other snapshots refresh
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+			return;
+		}
+		value = new Value<>(computed);
+	}
+	
+	void refreshIfInvalidated() {
+		if (invalidated != 0) {
+			refresh();
+		}
+	}
+	
+	/**
+	 * Holder, so that a null value can be distinguished from no value
+	 * 
+	 */
+	private static final class Value<T> {
+	
+		final T value;
+		
+		Value(T value) {
+			this.value = value;
+		}
+	
+	}
+	
+	@Override
+	public String toString() {
+		return "CachedSnapshot [key=" + key + ", policy=" + policy + "]";
+	}
+
+}
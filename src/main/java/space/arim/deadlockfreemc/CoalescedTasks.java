@@ -0,0 +1,92 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the latest pending command for each key submitted through
+ * {@link DeadlockFree#executeCoalesced(Object, Runnable)}. <br>
+ * <br>
+ * Only the first submission for a key, while none is pending, queues a {@link Drainer}.
+ * The drainer removes and runs whichever command is latest when it runs. If a submission
+ * races with the drainer's removal, it either replaces the command before removal, or finds
+ * no pending command and queues a new drainer. Either way, no submission is lost. <br>
+ * <br>
+ * If a drainer is dropped from the queue, the pending command is discarded with it,
+ * so that the next submission for the key queues a new drainer.
+ * 
+ * @author A248
+ * 
+ */
+final class CoalescedTasks {
+
+	private final ConcurrentMap<Object, Runnable> pending = new ConcurrentHashMap<>();
+	
+	/**
+	 * Records the command as the latest for its key
+	 * 
+	 * @param key the key
+	 * @param command the command
+	 * @return a drainer to queue, or null if one is already queued for the key
+	 */
+	Runnable submit(Object key, Runnable command) {
+		if (pending.put(key, command) == null) {
+			return new Drainer(key);
+		}
+		return null;
+	}
+	
+	/**
+	 * Runs the command immediately, superseding any pending command for the key.
+	 * Used when on the main thread.
+	 * 
+	 * @param key the key
+	 * @param command the command
+	 */
+	void runNow(Object key, Runnable command) {
+		pending.remove(key);
+		command.run();
+	}
+	
+	private final class Drainer implements Discardable {
+	
+		private final Object key;
+		
+		Drainer(Object key) {
+			this.key = key;
+		}
+		
+		@Override
+		public void run() {
+			Runnable command = pending.remove(key);
+			if (command != null) {
+				command.run();
+			}
+		}
+		
+		@Override
+		public void discard() {
+			pending.remove(key);
+		}
+	
+	}
+
+}
@@ -18,11 +18,23 @@
  */
 package space.arim.deadlockfreemc;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * A blank implementation for servers which don't have a main thread.
@@ -31,7 +43,17 @@ import java.util.concurrent.TimeoutException;
  * @author A248
  *
  */
-class ConcurrentImpl implements DeadlockFree {
+class ConcurrentImpl implements ManagedDeadlockFree {
+
+	/**
+	 * Without a main thread, there are no ticks, so ticks are taken to be 50 milliseconds
+	 * 
+	 */
+	private static final long MILLIS_PER_TICK = 50L;
+	
+	private final AsyncPool asyncPool = new AsyncPool();
+	private final AsyncScope asyncScope = new AsyncScope(asyncPool);
+	private volatile boolean shutdown;
 
 	@Override
 	public void execute(Runnable command) {
@@ -39,6 +61,146 @@ class ConcurrentImpl implements DeadlockFree {
 		command.run();
 	}
 
+	@Override
+	public void execute(Runnable command, Priority priority) {
+		Objects.requireNonNull(priority, "priority");
+		command.run();
+	}
+
+	@Override
+	public <A> void execute(Consumer<? super A> action, A argument) {
+		action.accept(argument);
+	}
+
+	@Override
+	public <A, B> void execute(BiConsumer<? super A, ? super B> action, A first, B second) {
+		action.accept(first, second);
+	}
+
+	@Override
+	public CompletableFuture<Void> submit(Runnable command) {
+		Objects.requireNonNull(command, "command");
+		return submit(() -> {
+			command.run();
+			return null;
+		});
+	}
+
+	@Override
+	public <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+		SubmittedTask<T> task = new SubmittedTask<>(Objects.requireNonNull(supplier, "supplier"));
+		task.run();
+		return task;
+	}
+
+	@Override
+	public void executeAll(Collection<? extends Runnable> commands) {
+		Runnable[] array = commands.toArray(new Runnable[0]);
+		for (Runnable command : array) {
+			Objects.requireNonNull(command, "command");
+		}
+		new BatchTask(array).run();
+	}
+
+	@Override
+	public void executeCoalesced(Object key, Runnable command) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(command, "command");
+		command.run();
+	}
+
+	@Override
+	public <T> CompletableFuture<Void> forEachOnMain(Iterable<T> elements, Consumer<? super T> action) {
+		return runBulkJob(BulkJob.forEach(elements, action));
+	}
+
+	@Override
+	public <T, R> CompletableFuture<List<R>> mapOnMain(Iterable<T> elements, Function<? super T, ? extends R> mapper) {
+		return runBulkJob(BulkJob.map(elements, mapper));
+	}
+	
+	private static <R> CompletableFuture<R> runBulkJob(BulkJob<?, R> job) {
+		job.runFully();
+		return job.future();
+	}
+
+	@Override
+	public ScheduledTask schedule(Runnable command, long ticks) {
+		Objects.requireNonNull(command, "command");
+		if (ticks < 0L || ticks > TimingWheel.MAX_DELAY) {
+			throw new IllegalArgumentException("Delay must be between 0 and " + TimingWheel.MAX_DELAY + " ticks");
+		}
+		return new FutureHandle(TimerHolder.TIMER.schedule(
+				onFallbackThread(command), ticks * MILLIS_PER_TICK, TimeUnit.MILLISECONDS));
+	}
+
+	@Override
+	public ScheduledTask scheduleRepeating(Runnable command, long initialDelayTicks, long periodTicks) {
+		Objects.requireNonNull(command, "command");
+		if (initialDelayTicks < 0L || periodTicks <= 0L
+				|| initialDelayTicks > TimingWheel.MAX_DELAY || periodTicks > TimingWheel.MAX_DELAY) {
+			throw new IllegalArgumentException("Delay and period must be between 0 and " + TimingWheel.MAX_DELAY + " ticks");
+		}
+		AtomicBoolean running = new AtomicBoolean();
+		Runnable repeating = onFallbackThread(() -> {
+			// A run still in progress on another thread is not overlapped
+			if (!running.compareAndSet(false, true)) {
+				return;
+			}
+			// The executor would otherwise stop repeating the command
+			try {
+				command.run();
+			} catch (RuntimeException ex) {
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+			} finally {
+				running.set(false);
+			}
+		});
+		return new FutureHandle(TimerHolder.TIMER.scheduleAtFixedRate(repeating,
+				initialDelayTicks * MILLIS_PER_TICK, periodTicks * MILLIS_PER_TICK, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Where virtual threads are available, scheduled commands run on them, and the timer thread
+	 * only keeps time. Otherwise, commands run on the timer thread, one after another.
+	 * 
+	 * @param command the command
+	 * @return the command to give to the timer
+	 */
+	private static Runnable onFallbackThread(Runnable command) {
+		if (!VirtualThreads.isAvailable()) {
+			return command;
+		}
+		Executor executor = VirtualThreads.executor();
+		return () -> executor.execute(command);
+	}
+
+	@Override
+	public <T> Snapshot<T> snapshot(Object key, Supplier<T> supplier, RefreshPolicy policy) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(supplier, "supplier");
+		Objects.requireNonNull(policy, "policy");
+		// Without a main thread, the value may be computed on any thread, so it is never stale
+		return new Snapshot<T>() {
+
+			@Override
+			public T get() {
+				return supplier.get();
+			}
+
+			@Override
+			public boolean isPresent() {
+				return true;
+			}
+
+			@Override
+			public void invalidate() {
+			}
+
+		};
+	}
+
 	@Override
 	public boolean isPrimaryThread() {
 		return false;
@@ -46,18 +208,115 @@ class ConcurrentImpl implements DeadlockFree {
 
 	@Override
 	public <T> T join(CompletableFuture<T> future) {
+		asyncPool.awaitIfPoolThread(future);
 		return future.join();
 	}
 
 	@Override
 	public <T> T get(Future<T> future) throws InterruptedException, ExecutionException {
+		asyncPool.awaitIfPoolThread(future);
 		return future.get();
 	}
 
 	@Override
 	public <T> T get(Future<T> future, long timeout, TimeUnit unit)
 			throws InterruptedException, ExecutionException, TimeoutException {
+		asyncPool.warnIfPoolThread(future);
 		return future.get(timeout, unit);
 	}
 
+	@Override
+	public Executor async() {
+		return asyncScope.executor();
+	}
+
+	@Override
+	public boolean shutdownAsync(long timeout, TimeUnit unit) throws InterruptedException {
+		return asyncScope.await(timeout, unit);
+	}
+	
+	@Override
+	public void shutdown() {
+		// Nothing is queued, so there is nothing else to stop
+		shutdown = true;
+		asyncPool.initiateShutdown();
+	}
+	
+	@Override
+	public boolean isShutdown() {
+		return shutdown;
+	}
+	
+	@Override
+	public void setTickBudget(TickBudget budget) {
+		Objects.requireNonNull(budget, "budget");
+	}
+	
+	@Override
+	public TickStats getLastTickStats() {
+		return TickStats.NONE;
+	}
+	
+	@Override
+	public void setStallWatchdog(StallWatchdog watchdog) {
+		Objects.requireNonNull(watchdog, "watchdog");
+	}
+	
+	@Override
+	public void setMaximumJoinDepth(int depth) {
+		if (depth <= 0) {
+			throw new IllegalArgumentException("Maximum join depth must be positive");
+		}
+		// Nothing runs tasks while joining
+	}
+	
+	@Override
+	public void setQueueBound(QueueBound bound) {
+		Objects.requireNonNull(bound, "bound");
+	}
+	
+	@Override
+	public void setMetricsEnabled(boolean enabled) {
+		
+	}
+	
+	@Override
+	public DeadlockFreeMetrics getMetrics() {
+		return null;
+	}
+	
+	/**
+	 * Lazily creates the timer thread, since scheduling is seldom used without a main thread
+	 * 
+	 */
+	private static final class TimerHolder {
+	
+		static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+			Thread thread = new Thread(runnable, "DeadlockFreeMC-Timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	
+	}
+	
+	private static final class FutureHandle implements ScheduledTask {
+	
+		private final ScheduledFuture<?> future;
+		
+		FutureHandle(ScheduledFuture<?> future) {
+			this.future = future;
+		}
+		
+		@Override
+		public boolean cancel() {
+			return future.cancel(false);
+		}
+		
+		@Override
+		public boolean isCancelled() {
+			return future.isCancelled();
+		}
+	
+	}
+
 }
@@ -18,12 +18,19 @@
  */
 package space.arim.deadlockfreemc;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Provides the ability to await completion of futures using synchronous executors on the main thread
@@ -61,7 +68,7 @@ public interface DeadlockFree extends Executor {
 
 	/**
 	 * Gets the instance. The environment (Bukkit/Spigot/Paper or Sponge)
-	 * is automatically detected.
+	 * is automatically detected. Listeners or tasks are registered once the instance is first used.
 	 * 
 	 * @return the instance
 	 */
@@ -69,6 +76,17 @@ public interface DeadlockFree extends Executor {
 		return Holder.INST;
 	}
 	
+	/**
+	 * Creates a builder for a separate instance, with its own queue, settings and tick source,
+	 * which may be shut down once no longer needed. Most plugins should instead use
+	 * {@link #getInstance()} or {@link DeadlockFreeBukkit#forPlugin(org.bukkit.plugin.Plugin)}.
+	 * 
+	 * @return a new builder
+	 */
+	static DeadlockFreeBuilder builder() {
+		return new DeadlockFreeBuilder();
+	}
+	
 	/**
 	 * Executes a Runnable on the main thread. <br>
 	 * <br>
@@ -84,6 +102,290 @@ public interface DeadlockFree extends Executor {
 	@Override
 	void execute(Runnable command);
 	
+	/**
+	 * Executes a Runnable on the main thread with the specified priority. <br>
+	 * <br>
+	 * If the caller is in the main thread, the command is immediately executed.
+	 * Otherwise, the command is queued in the lane for its priority. Higher priority tasks
+	 * run first, though a lower priority task passed over many times is given a turn,
+	 * so that low priority work is never starved. {@link #execute(Runnable)} uses {@link Priority#NORMAL}. <br>
+	 * <br>
+	 * Priorities apply within each owner, such as each plugin. Separately, when the main thread
+	 * {@link #join(CompletableFuture)}s or {@code get}s a future returned by {@link #submit(Supplier)}
+	 * or a {@link Pipeline}, or awaits one through {@link #joinAll(Collection)} or {@link #joinAny(Collection)},
+	 * the queued task completing it runs next, ahead of all lanes and owners.
+	 * 
+	 * @param command the command to execute
+	 * @param priority the priority of the command
+	 */
+	void execute(Runnable command, Priority priority);
+	
+	/**
+	 * Gets an executor which executes commands on the main thread with the specified priority,
+	 * as if by {@link #execute(Runnable, Priority)}. Suited to use with {@code CompletableFuture}.
+	 * 
+	 * @param priority the priority of commands
+	 * @return an executor using the priority
+	 */
+	default Executor withPriority(Priority priority) {
+		Objects.requireNonNull(priority, "priority");
+		return (command) -> execute(command, priority);
+	}
+	
+	/**
+	 * Executes a command on the main thread, returning a future for its completion. <br>
+	 * <br>
+	 * As with {@link #execute(Runnable)}, the command runs immediately if the caller is in the main thread.
+	 * If the future is cancelled or otherwise completed before the command runs, the command is skipped
+	 * without running, so work which is no longer wanted does not use the main thread. This is suited
+	 * to work on behalf of a player who may log out meanwhile. <br>
+	 * <br>
+	 * Note that continuations such as {@code future.thenRunAsync(action, deadlockFree)} never reach the
+	 * main thread if {@code future} fails or is cancelled, since {@code CompletableFuture} only
+	 * uses the executor to run the action.
+	 * 
+	 * @param command the command to execute
+	 * @return a future completed once the command runs, or exceptionally if it throws an exception
+	 */
+	CompletableFuture<Void> submit(Runnable command);
+	
+	/**
+	 * Computes a result on the main thread, in the same manner as {@link #submit(Runnable)}
+	 * 
+	 * @param <T> the result type
+	 * @param supplier the supplier of the result, called on the main thread
+	 * @return a future completed with the result, or exceptionally if the supplier throws an exception
+	 */
+	<T> CompletableFuture<T> submit(Supplier<T> supplier);
+	
+	/**
+	 * Executes an action with an argument on the main thread, in the same manner as {@link #execute(Runnable)}. <br>
+	 * <br>
+	 * Passing the argument separately, rather than capturing it in a lambda, lets the implementation
+	 * queue the call in a recycled task, so that frequent calls allocate nothing. The action itself
+	 * should therefore be a non-capturing lambda or a reused instance.
+	 * 
+	 * @param <A> the argument type
+	 * @param action the action to execute
+	 * @param argument the argument passed to the action
+	 */
+	<A> void execute(Consumer<? super A> action, A argument);
+	
+	/**
+	 * Executes an action with two arguments on the main thread, in the same manner as
+	 * {@link #execute(Consumer, Object)}
+	 * 
+	 * @param <A> the first argument type
+	 * @param <B> the second argument type
+	 * @param action the action to execute
+	 * @param first the first argument passed to the action
+	 * @param second the second argument passed to the action
+	 */
+	<A, B> void execute(BiConsumer<? super A, ? super B> action, A first, B second);
+	
+	/**
+	 * Executes a Runnable on the thread which ticks the specified region. <br>
+	 * <br>
+	 * On servers which tick regions on several threads, each region has its own queue,
+	 * and the command runs on the region's thread, immediately if the caller is already on it.
+	 * Elsewhere, there is a single main thread for all regions, so the region key is ignored
+	 * and this is equivalent to {@link #execute(Runnable)}.
+	 * 
+	 * @param regionKey the key identifying the region, compared by {@code equals} and {@code hashCode}
+	 * @param command the command to execute
+	 */
+	default void execute(Object regionKey, Runnable command) {
+		Objects.requireNonNull(regionKey, "regionKey");
+		execute(command);
+	}
+	
+	/**
+	 * Executes several commands on the main thread, in order and as a unit. <br>
+	 * <br>
+	 * If the caller is in the main thread, the commands are immediately executed.
+	 * Otherwise, the commands are queued together, in a single operation, and later run
+	 * consecutively, without other tasks interleaving. If a command throws an exception,
+	 * the remaining commands are still run. <br>
+	 * <br>
+	 * This is more efficient than calling {@link #execute(Runnable)} for each command.
+	 * 
+	 * @param commands the commands to execute
+	 */
+	void executeAll(Collection<? extends Runnable> commands);
+	
+	/**
+	 * Executes a command on the main thread, unless superseded by a later command with the same key. <br>
+	 * <br>
+	 * If the caller is in the main thread, the command is immediately executed, and any
+	 * pending command for the key is discarded. Otherwise, at most one command per key is kept
+	 * pending: a later submission replaces an earlier one which has not yet run. This is suited
+	 * to work where only the latest request matters, such as refreshing a player's scoreboard. <br>
+	 * <br>
+	 * Keys are compared by {@code equals} and {@code hashCode}. Safe to call concurrently.
+	 * 
+	 * @param key the key identifying the work
+	 * @param command the command to execute
+	 */
+	void executeCoalesced(Object key, Runnable command);
+	
+	/**
+	 * Applies an action to each element on the main thread, spread across ticks. <br>
+	 * <br>
+	 * Rather than processing all elements at once and stalling the tick, the elements are
+	 * processed a time slice at a time, picking up where processing left off on the next tick.
+	 * The time slice is determined by the {@link TickBudget}. Iteration begins on the main thread,
+	 * so the elements should not be modified concurrently. <br>
+	 * <br>
+	 * Cancelling the returned future stops processing. If the action throws an exception,
+	 * processing stops and the future completes exceptionally.
+	 * 
+	 * @param <T> the element type
+	 * @param elements the elements to process
+	 * @param action the action to apply on the main thread
+	 * @return a future completed once all elements are processed
+	 */
+	<T> CompletableFuture<Void> forEachOnMain(Iterable<T> elements, Consumer<? super T> action);
+	
+	/**
+	 * Maps each element on the main thread, spread across ticks, in the same manner as
+	 * {@link #forEachOnMain(Iterable, Consumer)}
+	 * 
+	 * @param <T> the element type
+	 * @param <R> the result type
+	 * @param elements the elements to map
+	 * @param mapper the mapping function to apply on the main thread
+	 * @return a future completed with the results, in iteration order, once all elements are mapped
+	 */
+	<T, R> CompletableFuture<List<R>> mapOnMain(Iterable<T> elements, Function<? super T, ? extends R> mapper);
+	
+	/**
+	 * Executes a command on the main thread after a delay in ticks. <br>
+	 * <br>
+	 * Once due, the command is queued like any other, so it is subject to the {@link TickBudget}.
+	 * A delay of 0 or 1 runs the command in the next tick. Scheduling is cheap, so this is suited
+	 * to large numbers of timers, such as per-entity cooldowns. Safe to call from any thread.
+	 * 
+	 * @param command the command to execute
+	 * @param ticks the delay in ticks
+	 * @return a handle through which to cancel the command
+	 * @throws IllegalArgumentException if the delay is negative or exceedingly large
+	 */
+	ScheduledTask schedule(Runnable command, long ticks);
+	
+	/**
+	 * Executes a command on the main thread repeatedly, in the same manner as {@link #schedule(Runnable, long)}. <br>
+	 * <br>
+	 * The command repeats at a fixed rate. If it falls behind, such as because of the tick budget,
+	 * it runs again in the next tick rather than several times to catch up. The command stops repeating
+	 * once cancelled. If the command throws an exception, it still repeats.
+	 * 
+	 * @param command the command to execute
+	 * @param initialDelayTicks the delay in ticks before the first run
+	 * @param periodTicks the period in ticks between runs
+	 * @return a handle through which to cancel the command
+	 * @throws IllegalArgumentException if the delay is negative, the period not positive, or either exceedingly large
+	 */
+	ScheduledTask scheduleRepeating(Runnable command, long initialDelayTicks, long periodTicks);
+	
+	/**
+	 * Gets or creates a {@link Snapshot} of a value computed on the main thread. <br>
+	 * <br>
+	 * The supplier runs on the main thread, at the start of ticks as determined by the {@link RefreshPolicy},
+	 * and whenever the snapshot is invalidated. Any thread may then read the last computed value without
+	 * waiting on the main thread. This suits state which async threads read often but which is only safe
+	 * to compute on the main thread. <br>
+	 * <br>
+	 * If a snapshot with the same key exists, it is returned, and the supplier and policy are ignored.
+	 * The same key must therefore always be used with the same value type. Snapshots not read for long
+	 * enough are evicted, as are the least recently read once there are many snapshots. <br>
+	 * <br>
+	 * If called on the main thread, a created snapshot is computed immediately. Otherwise, its value is
+	 * not present until the next tick.
+	 * 
+	 * @param <T> the type of the value
+	 * @param key the key identifying the snapshot
+	 * @param supplier computes the value on the main thread
+	 * @param policy when to recompute the value
+	 * @return the snapshot
+	 */
+	<T> Snapshot<T> snapshot(Object key, Supplier<T> supplier, RefreshPolicy policy);
+	
+	/**
+	 * Creates a reusable {@link Batch} of commands, which when submitted are run
+	 * as if by {@link #executeAll(Collection)}
+	 * 
+	 * @return a new, empty batch
+	 */
+	default Batch batch() {
+		return new Batch(this);
+	}
+	
+	/**
+	 * Creates an empty {@link Pipeline}, to which stages on the main thread and async threads
+	 * may be appended. Consecutive stages on the same side run together, so that a pipeline
+	 * waits for the main thread once per run of main thread stages, rather than once per stage.
+	 * 
+	 * @return a new, empty pipeline
+	 */
+	default Pipeline<Void> pipeline() {
+		return Pipeline.empty(this);
+	}
+	
+	/**
+	 * Gets the async worker pool, a work-stealing pool shared by everything using this instance. <br>
+	 * <br>
+	 * Using one pool sized to the machine, rather than a pool per plugin, avoids oversubscribing
+	 * processors, and leaves one for the main thread. The pool is created when first used. <br>
+	 * <br>
+	 * Pool threads should not block awaiting futures. If they do, through {@link #join(CompletableFuture)}
+	 * or {@code get}, a warning is logged, and the pool is allowed to start another thread in the meantime.
+	 * 
+	 * @return the async executor
+	 * @throws java.util.concurrent.RejectedExecutionException if the pool has been shut down, which
+	 * happens with {@link ManagedDeadlockFree#shutdown()}, or if {@link #shutdownAsync(long, TimeUnit)}
+	 * was called on this per-plugin instance
+	 */
+	Executor async();
+	
+	/**
+	 * Waits for queued and running async tasks submitted through this instance to complete.
+	 * Should be called when the plugin using this instance is disabled. <br>
+	 * <br>
+	 * On a per-plugin instance, such as from {@link DeadlockFreeBukkit#forPlugin(org.bukkit.plugin.Plugin)},
+	 * {@link #async()} then rejects further use until the instance is obtained again. The pool itself
+	 * is shared, so it is never shut down by this method; it is shut down only with the
+	 * {@link ManagedDeadlockFree} it belongs to.
+	 * 
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return true if the tasks completed, false if the timeout elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	boolean shutdownAsync(long timeout, TimeUnit unit) throws InterruptedException;
+	
+	/**
+	 * Whether {@link #virtualThreads()} is usable, which is the case on Java 21 and later
+	 * 
+	 * @return true if virtual threads are available, false otherwise
+	 */
+	default boolean supportsVirtualThreads() {
+		return VirtualThreads.isAvailable();
+	}
+	
+	/**
+	 * Gets an executor which runs each task on a new virtual thread. Requires Java 21 or later. <br>
+	 * <br>
+	 * Unlike {@link #async()}, tasks given to this executor may block freely. This allows blocking-style
+	 * code which hops to the main thread and back, such as {@code deadlockFree.join(deadlockFree.submit(...))},
+	 * without holding a platform thread: awaiting a future from a virtual thread only parks the virtual thread.
+	 * 
+	 * @return the virtual thread executor
+	 * @throws UnsupportedOperationException if virtual threads are not available on this runtime
+	 */
+	default Executor virtualThreads() {
+		return VirtualThreads.executor();
+	}
+	
 	/**
 	 * Whether current thread is the main server thread. <br>
 	 * This is used internally and is also provided for convenience.
@@ -133,4 +435,163 @@ public interface DeadlockFree extends Executor {
 	<T> T get(Future<T> future, long timeout, TimeUnit unit)
 			throws InterruptedException, ExecutionException, TimeoutException;
 	
+	/**
+	 * Safely awaits completion of all the futures, in the same manner as {@link #join(CompletableFuture)}. <br>
+	 * <br>
+	 * This is more efficient than joining each future in turn, since the main thread runs tasks
+	 * until all are complete, and is only woken once rather than for each future.
+	 * 
+	 * @param futures the futures to await completion of
+	 * @throws java.util.concurrent.CompletionException if any future completed exceptionally,
+	 * with the exception of the first such future in iteration order
+	 */
+	default void joinAll(Collection<? extends CompletableFuture<?>> futures) {
+		join(JoinCondition.all(futures));
+		for (CompletableFuture<?> future : futures) {
+			future.join();
+		}
+	}
+	
+	/**
+	 * Safely awaits completion of all the futures, in the same manner as {@link #joinAll(Collection)},
+	 * but for at most the given timeout. If interrupted, continues waiting and preserves the interrupt status.
+	 * 
+	 * @param futures the futures to await completion of
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @throws java.util.concurrent.CompletionException if any future completed exceptionally,
+	 * with the exception of the first such future in iteration order
+	 * @throws TimeoutException if the timeout elapsed while waiting
+	 */
+	default void joinAll(Collection<? extends CompletableFuture<?>> futures, long timeout, TimeUnit unit)
+			throws TimeoutException {
+		JoinCondition.await(this, JoinCondition.all(futures), timeout, unit);
+		for (CompletableFuture<?> future : futures) {
+			future.join();
+		}
+	}
+	
+	/**
+	 * Safely awaits completion of any of the futures, in the same manner as {@link #join(CompletableFuture)}.
+	 * The futures need not all be of the same type.
+	 * 
+	 * @param <T> the type of the futures' results
+	 * @param futures the futures to await completion of
+	 * @return the result of the first future to complete
+	 * @throws java.util.concurrent.CompletionException if the first future to complete did so exceptionally
+	 * @throws IllegalArgumentException if there are no futures
+	 */
+	@SuppressWarnings("unchecked")
+	default <T> T joinAny(Collection<? extends CompletableFuture<? extends T>> futures) {
+		return (T) join(JoinCondition.any(futures));
+	}
+	
+	/**
+	 * Safely awaits completion of any of the futures, in the same manner as {@link #joinAny(Collection)},
+	 * but for at most the given timeout. If interrupted, continues waiting and preserves the interrupt status.
+	 * 
+	 * @param <T> the type of the futures' results
+	 * @param futures the futures to await completion of
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return the result of the first future to complete
+	 * @throws java.util.concurrent.CompletionException if the first future to complete did so exceptionally
+	 * @throws IllegalArgumentException if there are no futures
+	 * @throws TimeoutException if the timeout elapsed while waiting
+	 */
+	@SuppressWarnings("unchecked")
+	default <T> T joinAny(Collection<? extends CompletableFuture<? extends T>> futures, long timeout, TimeUnit unit)
+			throws TimeoutException {
+		return (T) JoinCondition.await(this, JoinCondition.any(futures), timeout, unit);
+	}
+	
+	/**
+	 * Sets the budget limiting how long queued tasks may run on the main thread each tick. <br>
+	 * <br>
+	 * When limited, tasks left over once the budget is used up run in a following tick.
+	 * Note that this relaxes the stipulation of {@link #execute(Runnable)} that commands run
+	 * within 1 tick. Tasks run while the main thread awaits a future through {@link #join(CompletableFuture)}
+	 * or {@code get} are not subject to the budget. <br>
+	 * <br>
+	 * By default, the budget is {@link TickBudget#unlimited()}. Has no effect where there is no main thread.
+	 * 
+	 * @param budget the tick budget
+	 * @throws UnsupportedOperationException if this instance was obtained for a single plugin,
+	 * whose settings are shared with {@link #getInstance()}
+	 */
+	void setTickBudget(TickBudget budget);
+	
+	/**
+	 * Gets statistics for the most recent tick. <br>
+	 * Where there is no main thread, the statistics are always empty.
+	 * 
+	 * @return the statistics of the last tick
+	 */
+	TickStats getLastTickStats();
+	
+	/**
+	 * Sets how deeply calls to {@code join} and {@code get} may nest on the main thread
+	 * while still running queued tasks. <br>
+	 * <br>
+	 * A task run while the main thread awaits a future may itself await a future, and so on,
+	 * each level running further tasks deeper in the stack. Past the maximum depth, a join
+	 * instead waits without running tasks, leaving them to the joins further out. Since the
+	 * future may depend on a queued task, such a join runs tasks after all if its future is not
+	 * completed within 2 milliseconds, or the tick budget if shorter. The default maximum depth is 16.
+	 * 
+	 * @param depth the maximum join depth
+	 * @throws IllegalArgumentException if the depth is not positive
+	 * @throws UnsupportedOperationException if this instance was obtained for a single plugin,
+	 * whose settings are shared with {@link #getInstance()}
+	 */
+	void setMaximumJoinDepth(int depth);
+	
+	/**
+	 * Sets the bound limiting how many tasks may be queued for the main thread. <br>
+	 * <br>
+	 * Once the queue is full, further submissions through {@link #execute(Runnable)},
+	 * {@link #executeAll(Collection)} and {@link #executeCoalesced(Object, Runnable)} are
+	 * handled according to the bound's {@link OverflowPolicy}, which may block the caller or
+	 * throw a {@code RejectedExecutionException}. Submissions from the main thread run
+	 * immediately, so they are never affected. <br>
+	 * <br>
+	 * By default, the queue is {@link QueueBound#unbounded()}. Has no effect where there is no main thread.
+	 * 
+	 * @param bound the queue bound
+	 * @throws UnsupportedOperationException if this instance was obtained for a single plugin,
+	 * whose settings are shared with {@link #getInstance()}
+	 */
+	void setQueueBound(QueueBound bound);
+	
+	/**
+	 * Enables or disables metrics. When enabled, the metrics are also registered with JMX. <br>
+	 * <br>
+	 * Metrics are disabled by default, in which case they cost nothing.
+	 * Has no effect where there is no main thread.
+	 * 
+	 * @param enabled whether to enable metrics
+	 * @throws UnsupportedOperationException if this instance was obtained for a single plugin,
+	 * whose settings are shared with {@link #getInstance()}
+	 */
+	void setMetricsEnabled(boolean enabled);
+	
+	/**
+	 * Gets the metrics, if enabled. Disabling and then re-enabling metrics resets them.
+	 * 
+	 * @return the metrics, or {@code null} if disabled or there is no main thread
+	 */
+	DeadlockFreeMetrics getMetrics();
+	
+	/**
+	 * Sets the watchdog reporting main thread tasks which run for too long, and joins
+	 * which wait for too long. By default, the watchdog is disabled. <br>
+	 * <br>
+	 * Where there is no main thread, nothing is reported.
+	 * 
+	 * @param watchdog the watchdog settings, {@link StallWatchdog#disabled()} to disable
+	 * @throws UnsupportedOperationException if this instance was obtained for a single plugin,
+	 * whose settings are shared with {@link #getInstance()}
+	 */
+	void setStallWatchdog(StallWatchdog watchdog);
+	
 }
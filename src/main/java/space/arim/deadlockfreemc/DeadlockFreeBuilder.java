@@ -0,0 +1,219 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Configures and creates {@link ManagedDeadlockFree} instances. Obtained through {@link DeadlockFree#builder()}. <br>
+ * <br>
+ * Creating an instance is cheap. The tick source is only started, and its listeners or tasks registered,
+ * once the instance is first used, that is, when a task is first queued for the main thread, or a timer
+ * or snapshot is first created. Starting is idempotent. <br>
+ * <br>
+ * Without a plugin or tick source, the platform is detected: on Bukkit, Spigot or Paper, and on Sponge,
+ * an enabled plugin is picked when ticking starts. Where there is no platform, the instance has no main thread,
+ * as is the case on BungeeCord or Velocity. If a tick source is given without a plugin, the main thread
+ * is taken to be the thread on which the tick source notifies its callback. For servers which tick
+ * regions on several threads, see {@link #regionized(Object, Function)}. <br>
+ * <br>
+ * Builders are not thread safe, but may be reused to create further instances.
+ * 
+ * @author A248
+ * 
+ */
+public final class DeadlockFreeBuilder {
+
+	/*
+	 * Typed as Object so that platform classes are only loaded where used
+	 */
+	private Object plugin;
+	private Object pluginContainer;
+	
+	private TickSource tickSource;
+	private Object globalRegionKey;
+	private Function<Object, ? extends TickSource> regionTickSources;
+	private int queueChunkSize = MpscChunkedQueue.DEFAULT_CHUNK_SIZE;
+	private TickBudget tickBudget = TickBudget.unlimited();
+	private QueueBound queueBound = QueueBound.unbounded();
+	private boolean metricsEnabled;
+	
+	DeadlockFreeBuilder() {}
+	
+	/**
+	 * Sets the plugin owning the instance, with which listeners or tasks are registered,
+	 * on Bukkit, Spigot or Paper
+	 * 
+	 * @param plugin the plugin
+	 * @return this builder
+	 */
+	public DeadlockFreeBuilder plugin(org.bukkit.plugin.Plugin plugin) {
+		this.plugin = Objects.requireNonNull(plugin, "plugin");
+		pluginContainer = null;
+		return this;
+	}
+	
+	/**
+	 * Sets the plugin owning the instance, with which tasks are scheduled, on Sponge
+	 * 
+	 * @param plugin the plugin container
+	 * @return this builder
+	 */
+	public DeadlockFreeBuilder pluginContainer(org.spongepowered.api.plugin.PluginContainer plugin) {
+		pluginContainer = Objects.requireNonNull(plugin, "plugin");
+		this.plugin = null;
+		return this;
+	}
+	
+	/**
+	 * Sets the tick source, which determines when queued tasks run on the main thread.
+	 * By default, the best tick source for the platform is used.
+	 * 
+	 * @param tickSource the tick source
+	 * @return this builder
+	 */
+	public DeadlockFreeBuilder tickSource(TickSource tickSource) {
+		this.tickSource = Objects.requireNonNull(tickSource, "tickSource");
+		return this;
+	}
+	
+	/**
+	 * Makes the instance regionized, for servers which tick regions on several threads. <br>
+	 * <br>
+	 * Each region has its own queue and tick source, created when the region is first used, and
+	 * {@link DeadlockFree#execute(Object, Runnable)} runs tasks on the thread ticking the region.
+	 * Other tasks run on the thread ticking the region they were submitted from, or else on the
+	 * global region. Each region must be ticked by a single thread, which ticks no other region.
+	 * Regions other than the global region are evicted once idle for a while, and created again
+	 * when next used. The global region starts ticking as soon as the instance is created. <br>
+	 * <br>
+	 * Overrides any plugin or tick source set.
+	 * 
+	 * @param globalRegionKey the key of the region used by threads which do not tick a region
+	 * @param regionTickSources creates the tick source of each region, given its key
+	 * @return this builder
+	 */
+	public DeadlockFreeBuilder regionized(Object globalRegionKey, Function<Object, ? extends TickSource> regionTickSources) {
+		this.globalRegionKey = Objects.requireNonNull(globalRegionKey, "globalRegionKey");
+		this.regionTickSources = Objects.requireNonNull(regionTickSources, "regionTickSources");
+		return this;
+	}
+	
+	/**
+	 * Sets the size of the array chunks from which task queues are built. Larger chunks allocate
+	 * less often under heavy submission, while smaller chunks use less memory for idle queues,
+	 * each plugin's queue having a chunk per {@link Priority}. The default is 256.
+	 * 
+	 * @param chunkSize the chunk size
+	 * @return this builder
+	 * @throws IllegalArgumentException if the chunk size is not positive
+	 */
+	public DeadlockFreeBuilder queueChunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive");
+		}
+		queueChunkSize = chunkSize;
+		return this;
+	}
+	
+	/**
+	 * Sets the budget limiting how long queued tasks run each tick. See {@link DeadlockFree#setTickBudget(TickBudget)}
+	 * 
+	 * @param budget the tick budget
+	 * @return this builder
+	 */
+	public DeadlockFreeBuilder tickBudget(TickBudget budget) {
+		tickBudget = Objects.requireNonNull(budget, "budget");
+		return this;
+	}
+	
+	/**
+	 * Sets the bound on how many tasks may be queued. See {@link DeadlockFree#setQueueBound(QueueBound)}
+	 * 
+	 * @param bound the queue bound
+	 * @return this builder
+	 */
+	public DeadlockFreeBuilder queueBound(QueueBound bound) {
+		queueBound = Objects.requireNonNull(bound, "bound");
+		return this;
+	}
+	
+	/**
+	 * Sets whether metrics are recorded. See {@link DeadlockFree#setMetricsEnabled(boolean)}
+	 * 
+	 * @param enabled whether to enable metrics
+	 * @return this builder
+	 */
+	public DeadlockFreeBuilder metricsEnabled(boolean enabled) {
+		metricsEnabled = enabled;
+		return this;
+	}
+	
+	/**
+	 * Creates an instance with the current settings. The instance starts ticking when first used.
+	 * 
+	 * @return the instance
+	 */
+	public ManagedDeadlockFree build() {
+		if (regionTickSources != null) {
+			RegionizedImpl regionized = new RegionizedImpl(globalRegionKey, regionTickSources,
+					queueChunkSize, RegionizedImpl.DEFAULT_EVICT_AFTER_IDLE_TICKS);
+			regionized.setTickBudget(tickBudget);
+			regionized.setQueueBound(queueBound);
+			regionized.setMetricsEnabled(metricsEnabled);
+			return regionized;
+		}
+		AbstractImplementation impl;
+		if (plugin != null) {
+			impl = BukkitImpl.create((org.bukkit.plugin.Plugin) plugin, tickSource, queueChunkSize);
+		
+		} else if (pluginContainer != null) {
+			impl = SpongeImpl.create((org.spongepowered.api.plugin.PluginContainer) pluginContainer, tickSource, queueChunkSize);
+		
+		} else if (tickSource != null) {
+			TickSource tickSource = this.tickSource;
+			impl = new StandaloneImpl(() -> tickSource, queueChunkSize);
+		
+		} else if (isClassPresent("org.bukkit.Bukkit")) {
+			impl = BukkitImpl.create(null, null, queueChunkSize);
+		
+		} else if (isClassPresent("org.spongepowered.api.Sponge")) {
+			impl = SpongeImpl.create(null, null, queueChunkSize);
+		
+		} else {
+			// No main thread, so no settings apply
+			return new ConcurrentImpl();
+		}
+		impl.setTickBudget(tickBudget);
+		impl.setQueueBound(queueBound);
+		impl.setMetricsEnabled(metricsEnabled);
+		return impl;
+	}
+	
+	private static boolean isClassPresent(String className) {
+		try {
+			Class.forName(className);
+			return true;
+		} catch (ClassNotFoundException ex) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Entry points specific to Bukkit, Spigot and Paper
+ * 
+ * @author A248
+ * 
+ */
+public final class DeadlockFreeBukkit {
+
+	private DeadlockFreeBukkit() {}
+	
+	/**
+	 * Gets an instance through which the specified plugin submits tasks. <br>
+	 * <br>
+	 * Each plugin's tasks are queued separately, and the main thread takes turns running
+	 * each plugin's tasks, so that one plugin flooding the queue does not delay the others.
+	 * Queue depth and main thread time are accounted per plugin in {@link DeadlockFreeMetrics#getOwnerUsage()}.
+	 * All other behaviour is that of {@link DeadlockFree#getInstance()}. Settings are shared
+	 * with it, so they may only be changed through it; the setters of the returned instance
+	 * throw {@code UnsupportedOperationException}. <br>
+	 * <br>
+	 * Equivalent to {@code forPlugin(plugin, 1)}.
+	 * 
+	 * @param plugin the plugin
+	 * @return the instance for the plugin
+	 */
+	public static DeadlockFree forPlugin(Plugin plugin) {
+		return forPlugin(plugin, 1);
+	}
+	
+	/**
+	 * Gets an instance through which the specified plugin submits tasks, with a specified weight.
+	 * See {@link #forPlugin(Plugin)}. <br>
+	 * <br>
+	 * The weight is the amount of the plugin's tasks run each turn. Tasks submitted through
+	 * {@link DeadlockFree#getInstance()} have a weight of 1. Calling this method again updates the weight.
+	 * 
+	 * @param plugin the plugin
+	 * @param weight the weight of the plugin's tasks
+	 * @return the instance for the plugin
+	 * @throws IllegalArgumentException if the weight is not positive
+	 */
+	public static DeadlockFree forPlugin(Plugin plugin, int weight) {
+		return Holder.forOwner(plugin.getName(), weight);
+	}
+
+}
@@ -0,0 +1,141 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Map;
+
+/**
+ * Instrumentation of the main thread queue. Obtained through {@link DeadlockFree#getMetrics()}. <br>
+ * <br>
+ * The same figures are exposed over JMX under the domain {@code space.arim.deadlockfreemc}.
+ * 
+ * @author A248
+ * 
+ */
+public interface DeadlockFreeMetrics {
+
+	/**
+	 * Gets the approximate amount of tasks currently queued
+	 * 
+	 * @return the current queue depth
+	 */
+	long getQueueDepth();
+	
+	/**
+	 * Gets the highest queue depth observed when the main thread began running tasks
+	 * 
+	 * @return the peak queue depth
+	 */
+	long getPeakQueueDepth();
+	
+	/**
+	 * Gets the total amount of queued tasks run
+	 * 
+	 * @return the tasks run
+	 */
+	long getTasksRun();
+	
+	/**
+	 * Gets a histogram of the delays between a task being queued and its starting to run
+	 * 
+	 * @return the queue delay histogram
+	 */
+	LatencyHistogram getQueueDelays();
+	
+	/**
+	 * Gets a histogram of the run times of queued tasks
+	 * 
+	 * @return the run time histogram
+	 */
+	LatencyHistogram getRunTimes();
+	
+	/**
+	 * Gets the total time, in nanoseconds, the main thread spent parked while awaiting
+	 * futures in {@code join} or {@code get}
+	 * 
+	 * @return the total join wait time
+	 */
+	long getJoinWaitNanos();
+	
+	/**
+	 * Gets the deepest nesting of {@code join} or {@code get} seen on the main thread,
+	 * as when a task run while awaiting a future itself awaits a future
+	 * 
+	 * @return the maximum join depth
+	 */
+	int getMaximumJoinDepth();
+	
+	/**
+	 * Gets the total time, in nanoseconds, the main thread spent running tasks within
+	 * nested joins, that is, at a join depth of 2 or more
+	 * 
+	 * @return the total nested drain time
+	 */
+	long getNestedDrainNanos();
+	
+	/**
+	 * Gets the amount of times a join past the maximum depth had to run tasks after all,
+	 * because its future was not completed within the grace period.
+	 * See {@link DeadlockFree#setMaximumJoinDepth(int)}
+	 * 
+	 * @return the join depth escapes
+	 */
+	long getJoinDepthEscapes();
+	
+	/**
+	 * Gets the usage of the queue by each owner, keyed by owner name. Tasks submitted through
+	 * the instance itself, rather than one obtained through {@link DeadlockFreeBukkit#forPlugin(org.bukkit.plugin.Plugin)}
+	 * or similar, are attributed to the owner named "shared".
+	 * 
+	 * @return the usage of each owner
+	 */
+	Map<String, OwnerUsage> getOwnerUsage();
+	
+	/**
+	 * Gets the amount of tasks rejected because the queue was full.
+	 * See {@link OverflowPolicy#REJECT} and {@link OverflowPolicy#BLOCK}.
+	 * 
+	 * @return the rejected tasks
+	 */
+	long getRejectedTasks();
+	
+	/**
+	 * Gets the amount of queued tasks dropped to make room. See {@link OverflowPolicy#DROP_OLDEST}
+	 * 
+	 * @return the dropped tasks
+	 */
+	long getDroppedTasks();
+	
+	/**
+	 * Gets the amount of tasks run on the submitting thread because the queue was full.
+	 * See {@link OverflowPolicy#CALLER_RUNS}
+	 * 
+	 * @return the tasks run by callers
+	 */
+	long getCallerRunTasks();
+	
+	/**
+	 * Gets the total time, in nanoseconds, submitting threads spent waiting for room
+	 * in the queue. See {@link OverflowPolicy#BLOCK}
+	 * 
+	 * @return the total producer blocked time
+	 */
+	long getProducerBlockedNanos();
+
+}
@@ -0,0 +1,67 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link DeadlockFreeMetrics}. Durations are in nanoseconds.
+ * 
+ * @author A248
+ * 
+ */
+public interface DeadlockFreeMetricsMXBean {
+
+	long getQueueDepth();
+	
+	long getPeakQueueDepth();
+	
+	long getTasksRun();
+	
+	long getJoinWaitNanos();
+	
+	int getMaximumJoinDepth();
+	
+	long getNestedDrainNanos();
+	
+	long getJoinDepthEscapes();
+	
+	Map<String, OwnerUsage> getOwnerUsage();
+	
+	long getRejectedTasks();
+	
+	long getDroppedTasks();
+	
+	long getCallerRunTasks();
+	
+	long getProducerBlockedNanos();
+	
+	long getQueueDelay50thPercentile();
+	
+	long getQueueDelay99thPercentile();
+	
+	long[] getQueueDelayBuckets();
+	
+	long getRunTime50thPercentile();
+	
+	long getRunTime99thPercentile();
+	
+	long[] getRunTimeBuckets();
+
+}
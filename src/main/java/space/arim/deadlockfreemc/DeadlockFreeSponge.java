@@ -0,0 +1,59 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import org.spongepowered.api.plugin.PluginContainer;
+
+/**
+ * Entry points specific to Sponge
+ * 
+ * @author A248
+ * 
+ */
+public final class DeadlockFreeSponge {
+
+	private DeadlockFreeSponge() {}
+	
+	/**
+	 * Gets an instance through which the specified plugin submits tasks.
+	 * See {@link DeadlockFreeBukkit#forPlugin(org.bukkit.plugin.Plugin)}, of which this is the Sponge equivalent. <br>
+	 * <br>
+	 * Equivalent to {@code forPlugin(plugin, 1)}.
+	 * 
+	 * @param plugin the plugin container
+	 * @return the instance for the plugin
+	 */
+	public static DeadlockFree forPlugin(PluginContainer plugin) {
+		return forPlugin(plugin, 1);
+	}
+	
+	/**
+	 * Gets an instance through which the specified plugin submits tasks, with a specified weight.
+	 * See {@link DeadlockFreeBukkit#forPlugin(org.bukkit.plugin.Plugin, int)}
+	 * 
+	 * @param plugin the plugin container
+	 * @param weight the weight of the plugin's tasks
+	 * @return the instance for the plugin
+	 * @throws IllegalArgumentException if the weight is not positive
+	 */
+	public static DeadlockFree forPlugin(PluginContainer plugin, int weight) {
+		return Holder.forOwner(plugin.getId(), weight);
+	}
+
+}
@@ -0,0 +1,36 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * A queued task which must be told if it is dropped from the queue rather than run,
+ * as by {@link OverflowPolicy#DROP_OLDEST}
+ * 
+ * @author A248
+ * 
+ */
+interface Discardable extends Runnable {
+
+	/**
+	 * Called instead of {@link #run()} when the task is dropped. May be called from any thread.
+	 * 
+	 */
+	void discard();
+
+}
@@ -0,0 +1,239 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+/**
+ * The main thread queue, shared fairly between owners. Each owner has its own {@link OwnerQueue}. <br>
+ * <br>
+ * Owners with tasks are drained in weighted round-robin: an owner runs up to its weight in tasks,
+ * then goes to the back of the ready queue. So one owner flooding the queue only delays its own
+ * tasks. Only owners with tasks are visited, so idle owners cost nothing. <br>
+ * <br>
+ * Tombstones of {@link Revocable} tasks are skipped, without using the owner's turn. <br>
+ * <br>
+ * A {@link PromotableTask} promoted by the consumer runs next, regardless of owner or lane,
+ * since the main thread is waiting for it. <br>
+ * <br>
+ * Thread safety is as for {@link MpscChunkedQueue}.
+ * 
+ * @author A248
+ * 
+ */
+final class FairQueue {
+
+	private final List<OwnerQueue> owners = new CopyOnWriteArrayList<>();
+	private final MpscChunkedQueue<OwnerQueue> ready = new MpscChunkedQueue<>();
+	private volatile boolean removalEnabled;
+	
+	/*
+	 * Consumer-owned state
+	 */
+	private OwnerQueue current;
+	private int credit;
+	private OwnerQueue polledOwner;
+	private long polledStamp;
+	private final Deque<PromotableTask> promoted = new ArrayDeque<>();
+	
+	/**
+	 * Adds an owner
+	 * 
+	 * @param owner the owner
+	 */
+	void register(OwnerQueue owner) {
+		owners.add(owner);
+		if (removalEnabled) {
+			owner.lanes().enableRemoval();
+		}
+	}
+	
+	/**
+	 * Adds a task. May be called from any thread.
+	 * 
+	 * @param owner the owner of the task
+	 * @param task the task
+	 * @param stamp the timestamp, later available through {@link #polledStamp()}
+	 * @param priority the priority of the task
+	 */
+	void offer(OwnerQueue owner, Runnable task, long stamp, Priority priority) {
+		owner.lanes().offer(task, stamp, priority);
+		if (owner.activate()) {
+			ready.offer(owner);
+		}
+	}
+	
+	/**
+	 * Runs a queued task next, ahead of other owners and higher lanes. The task is left in its
+	 * lane, and skipped there once revoked. Must only be called by the consumer thread.
+	 * 
+	 * @param task the task, ignored if not yet queued
+	 */
+	void promote(PromotableTask task) {
+		if (task.owner() != null) {
+			promoted.offerLast(task);
+		}
+	}
+	
+	/**
+	 * Removes the next task to run. Must only be called by the consumer thread.
+	 * 
+	 * @return the task, or null if there is none
+	 */
+	Runnable poll() {
+		PromotableTask promotedTask;
+		while ((promotedTask = promoted.pollFirst()) != null) {
+			if (!promotedTask.isRevoked()) {
+				polledOwner = promotedTask.owner();
+				polledStamp = promotedTask.queuedStamp();
+				return promotedTask;
+			}
+		}
+		for (;;) {
+			OwnerQueue owner = current;
+			if (owner == null) {
+				owner = ready.poll();
+				if (owner == null) {
+					return null;
+				}
+				current = owner;
+				credit = owner.weight();
+			}
+			TaskLanes lanes = owner.lanes();
+			Runnable task = lanes.poll();
+			if (task != null) {
+				if (task instanceof Revocable && ((Revocable) task).isRevoked()) {
+					continue;
+				}
+				polledOwner = owner;
+				polledStamp = lanes.polledStamp();
+				if (--credit <= 0) {
+					// Turn is over. Remains active, so goes to the back
+					current = null;
+					ready.offer(owner);
+				}
+				return task;
+			}
+			current = null;
+			owner.deactivate();
+			// A producer may have added a task before deactivation, but not activated the owner
+			if (!lanes.isEmpty() && owner.activate()) {
+				ready.offer(owner);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the owner of the task last returned by {@link #poll()}.
+	 * Must only be called by the consumer thread.
+	 * 
+	 * @return the owner
+	 */
+	OwnerQueue polledOwner() {
+		return polledOwner;
+	}
+	
+	/**
+	 * Gets the timestamp of the task last returned by {@link #poll()}.
+	 * Must only be called by the consumer thread.
+	 * 
+	 * @return the timestamp given when the task was offered
+	 */
+	long polledStamp() {
+		return polledStamp;
+	}
+	
+	/**
+	 * Whether there is no task ready to be polled. Must only be called by the consumer thread. <br>
+	 * May spuriously return false if an owner without tasks is awaiting its turn.
+	 * 
+	 * @return true if {@link #poll()} would currently return null
+	 */
+	boolean isEmpty() {
+		OwnerQueue current = this.current;
+		return promoted.isEmpty() && (current == null || current.lanes().isEmpty()) && ready.isEmpty();
+	}
+	
+	/**
+	 * Estimates the amount of tasks of all owners. May be called from any thread.
+	 * 
+	 * @return the approximate size
+	 */
+	long size() {
+		long size = 0L;
+		for (OwnerQueue owner : owners) {
+			size += owner.lanes().size();
+		}
+		return size;
+	}
+	
+	List<OwnerQueue> owners() {
+		return owners;
+	}
+	
+	/**
+	 * See {@link MpscChunkedQueue#enableRemoval()}
+	 * 
+	 */
+	void enableRemoval() {
+		removalEnabled = true;
+		for (OwnerQueue owner : owners) {
+			owner.lanes().enableRemoval();
+		}
+	}
+	
+	/**
+	 * Takes the oldest task of the lowest priority accepted by the filter from the owner with
+	 * the most tasks, so that the owner flooding the queue bears the loss. If that owner has
+	 * no such task, the other owners are tried.
+	 * See {@link MpscChunkedQueue#removeOldest(Predicate)}
+	 * 
+	 * @param filter which tasks may be removed
+	 * @return the removed task, or null if none was found
+	 */
+	Runnable removeOldest(Predicate<? super Runnable> filter) {
+		OwnerQueue deepest = null;
+		long deepestSize = 0L;
+		for (OwnerQueue owner : owners) {
+			long size = owner.lanes().size();
+			if (size > deepestSize) {
+				deepest = owner;
+				deepestSize = size;
+			}
+		}
+		if (deepest == null) {
+			return null;
+		}
+		Runnable task = deepest.lanes().removeOldest(filter);
+		if (task != null) {
+			return task;
+		}
+		for (OwnerQueue owner : owners) {
+			if (owner != deepest && (task = owner.lanes().removeOldest(filter)) != null) {
+				return task;
+			}
+		}
+		return null;
+	}
+
+}
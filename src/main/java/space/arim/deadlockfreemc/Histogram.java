@@ -0,0 +1,54 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size histogram of durations in power-of-two nanosecond buckets. Recording never allocates. <br>
+ * <br>
+ * There must be only a single recording thread, while snapshots may be taken from any thread.
+ * 
+ * @author A248
+ * 
+ */
+final class Histogram {
+
+	private final AtomicLongArray buckets = new AtomicLongArray(LatencyHistogram.BUCKETS);
+	
+	/**
+	 * Records a duration. Must only be called by the recording thread.
+	 * 
+	 * @param nanos the duration in nanoseconds
+	 */
+	void record(long nanos) {
+		int bucket = LatencyHistogram.bucketOf(nanos);
+		// Single writer, so no need for an atomic increment
+		buckets.lazySet(bucket, buckets.get(bucket) + 1);
+	}
+	
+	LatencyHistogram snapshot() {
+		long[] counts = new long[LatencyHistogram.BUCKETS];
+		for (int n = 0; n < counts.length; n++) {
+			counts[n] = buckets.get(n);
+		}
+		return new LatencyHistogram(counts);
+	}
+
+}
@@ -20,28 +20,21 @@ package space.arim.deadlockfreemc;
 
 public class Holder {
 
-	static final DeadlockFree INST;
+	/**
+	 * Created when first requested, and starts ticking when first used
+	 * 
+	 */
+	static final DeadlockFree INST = new DeadlockFreeBuilder().build();
 	
-	static {
-		DeadlockFree inst = null;
-		try {
-			Class.forName("org.bukkit.Bukkit");
-			inst = new BukkitImpl(org.bukkit.Bukkit.getPluginManager().getPlugins()[0]);
-		} catch (ClassNotFoundException ex) {
-
-		}
-		if (inst == null) {
-			try {
-				Class.forName("org.spongepowered.api.Sponge");
-				inst = new SpongeImpl(org.spongepowered.api.Sponge.getPluginManager().getPlugins().iterator().next());
-			} catch (ClassNotFoundException ex) {
-
-			}
+	static DeadlockFree forOwner(String name, int weight) {
+		if (INST instanceof AbstractImplementation) {
+			return ((AbstractImplementation) INST).forOwner(name, weight);
 		}
-		if (inst == null) {
-			inst = new ConcurrentImpl(); // no dependencies
+		if (weight <= 0) {
+			throw new IllegalArgumentException("Weight must be positive");
 		}
-		INST = inst;
+		// No main thread, so nothing to share
+		return INST;
 	}
 	
 }
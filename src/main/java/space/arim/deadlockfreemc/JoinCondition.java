@@ -0,0 +1,161 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Future completed once all, or any, of several futures complete. <br>
+ * <br>
+ * Each future gets a single callback which counts down, so awaiting the condition
+ * wakes the main thread only once rather than for every future. Joining the condition
+ * promotes the queued tasks of the futures, as joining each would.
+ * 
+ * @author A248
+ * 
+ */
+final class JoinCondition extends CompletableFuture<Object> implements BiConsumer<Object, Throwable>, PromotableFuture {
+
+	private final boolean all;
+	private final AtomicInteger remaining;
+	private final CompletableFuture<?>[] futures;
+	
+	private JoinCondition(boolean all, int remaining, CompletableFuture<?>[] futures) {
+		this.all = all;
+		this.remaining = new AtomicInteger(remaining);
+		this.futures = futures;
+	}
+	
+	/**
+	 * Creates a condition completed normally, with no value, once all futures are complete,
+	 * whether normally or exceptionally
+	 * 
+	 * @param futures the futures
+	 * @return the condition
+	 */
+	static JoinCondition all(Collection<? extends CompletableFuture<?>> futures) {
+		CompletableFuture<?>[] array = toArray(futures);
+		JoinCondition condition = new JoinCondition(true, array.length, array);
+		if (array.length == 0) {
+			condition.complete(null);
+		}
+		for (CompletableFuture<?> future : array) {
+			future.whenComplete(condition);
+		}
+		return condition;
+	}
+	
+	/**
+	 * Creates a condition completed in the same way as the first future to complete
+	 * 
+	 * @param futures the futures
+	 * @return the condition
+	 * @throws IllegalArgumentException if there are no futures
+	 */
+	static JoinCondition any(Collection<? extends CompletableFuture<?>> futures) {
+		CompletableFuture<?>[] array = toArray(futures);
+		if (array.length == 0) {
+			throw new IllegalArgumentException("No futures to await");
+		}
+		JoinCondition condition = new JoinCondition(false, 1, array);
+		for (CompletableFuture<?> future : array) {
+			if (condition.isDone()) {
+				// Avoid piling callbacks on futures which no longer matter
+				break;
+			}
+			future.whenComplete(condition);
+		}
+		return condition;
+	}
+	
+	private static CompletableFuture<?>[] toArray(Collection<? extends CompletableFuture<?>> futures) {
+		CompletableFuture<?>[] array = futures.toArray(new CompletableFuture<?>[0]);
+		for (CompletableFuture<?> future : array) {
+			if (future == null) {
+				throw new NullPointerException("future");
+			}
+		}
+		return array;
+	}
+	
+	/**
+	 * Awaits the condition through {@link DeadlockFree#get(java.util.concurrent.Future, long, TimeUnit)},
+	 * with the exception behaviour of {@code join}. Interrupts do not stop the wait.
+	 * 
+	 * @param deadlockFree the implementation
+	 * @param condition the condition
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return the result of the condition
+	 * @throws TimeoutException if the timeout elapsed while waiting
+	 */
+	static Object await(DeadlockFree deadlockFree, JoinCondition condition, long timeout, TimeUnit unit)
+			throws TimeoutException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		boolean interrupted = false;
+		try {
+			for (;;) {
+				try {
+					return deadlockFree.get(condition, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				} catch (ExecutionException ex) {
+					throw new CompletionException(ex.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	@Override
+	public void forEachPromotable(Consumer<? super PromotableTask> action) {
+		for (CompletableFuture<?> future : futures) {
+			if (future instanceof PromotableFuture) {
+				((PromotableFuture) future).forEachPromotable(action);
+			}
+		}
+	}
+	
+	@Override
+	public void accept(Object result, Throwable ex) {
+		if (remaining.decrementAndGet() != 0) {
+			return;
+		}
+		// For all, the futures report their own results and exceptions
+		if (all) {
+			complete(null);
+		} else if (ex == null) {
+			complete(result);
+		} else {
+			completeExceptionally(ex);
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of a histogram of durations. Bucket {@code n} counts durations of at least
+ * 2<sup>n</sup> and less than 2<sup>n+1</sup> nanoseconds, except bucket 0 which also
+ * counts durations under 1 nanosecond. <br>
+ * <br>
+ * Instances are immutable.
+ * 
+ * @author A248
+ * 
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The amount of buckets
+	 * 
+	 */
+	public static final int BUCKETS = 63;
+	
+	private final long[] counts;
+	private final long total;
+	
+	LatencyHistogram(long[] counts) {
+		this.counts = counts;
+		long total = 0L;
+		for (long count : counts) {
+			total += count;
+		}
+		this.total = total;
+	}
+	
+	static int bucketOf(long nanos) {
+		return (nanos <= 1L) ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+	}
+	
+	/**
+	 * Gets the exclusive upper bound, in nanoseconds, of the specified bucket
+	 * 
+	 * @param bucket the bucket index
+	 * @return the upper bound of durations in the bucket
+	 */
+	public static long getBucketUpperBound(int bucket) {
+		if (bucket < 0 || bucket >= BUCKETS) {
+			throw new IndexOutOfBoundsException("Bucket " + bucket);
+		}
+		return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : 1L << (bucket + 1);
+	}
+	
+	/**
+	 * Gets the total count of recorded durations
+	 * 
+	 * @return the total count
+	 */
+	public long getCount() {
+		return total;
+	}
+	
+	/**
+	 * Gets the counts in each bucket
+	 * 
+	 * @return a new array of the counts, of length {@link #BUCKETS}
+	 */
+	public long[] getBucketCounts() {
+		return counts.clone();
+	}
+	
+	/**
+	 * Estimates the specified percentile, as the upper bound of the bucket in which it lies
+	 * 
+	 * @param percentile the percentile, from 0 to 100
+	 * @return the estimated duration in nanoseconds, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0D || percentile > 100D) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100");
+		}
+		if (total == 0L) {
+			return 0L;
+		}
+		long threshold = (long) Math.ceil(total * (percentile / 100D));
+		long seen = 0L;
+		for (int n = 0; n < BUCKETS; n++) {
+			seen += counts[n];
+			if (seen >= threshold && seen > 0L) {
+				return getBucketUpperBound(n);
+			}
+		}
+		return getBucketUpperBound(BUCKETS - 1);
+	}
+	
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + total + ", counts=" + Arrays.toString(counts) + "]";
+	}
+
+}
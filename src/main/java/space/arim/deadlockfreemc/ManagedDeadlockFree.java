@@ -0,0 +1,48 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * A {@link DeadlockFree} instance created through {@link DeadlockFree#builder()}, which its creator may shut down.
+ * 
+ * @author A248
+ * 
+ */
+public interface ManagedDeadlockFree extends DeadlockFree {
+
+	/**
+	 * Shuts down this instance. Stops the tick source, unregistering its listeners or tasks,
+	 * shuts down the async worker pool without waiting, and disables metrics and the stall watchdog.
+	 * Afterward, tasks which would have been queued for the main thread are rejected with
+	 * {@link java.util.concurrent.RejectedExecutionException}. <br>
+	 * <br>
+	 * If called on the main thread, tasks already queued are run first. Otherwise, they are not run.
+	 * Calling this method again has no effect.
+	 * 
+	 */
+	void shutdown();
+	
+	/**
+	 * Whether {@link #shutdown()} has been called
+	 * 
+	 * @return true if shut down, false otherwise
+	 */
+	boolean isShutdown();
+
+}
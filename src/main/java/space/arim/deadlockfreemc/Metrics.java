@@ -0,0 +1,248 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records metrics of an {@link AbstractImplementation}. Apart from the queue depth supplier
+ * and the backpressure counters, all recording methods are called only on the main thread.
+ * 
+ * @author A248
+ * 
+ */
+final class Metrics implements DeadlockFreeMetrics, DeadlockFreeMetricsMXBean {
+
+	private static final AtomicInteger INSTANCE_IDS = new AtomicInteger();
+	
+	private final LongSupplier queueDepth;
+	private final Supplier<Map<String, OwnerUsage>> ownerUsage;
+	private final ObjectName objectName;
+	
+	private final Histogram queueDelays = new Histogram();
+	private final Histogram runTimes = new Histogram();
+	
+	/*
+	 * Main thread is the only writer
+	 */
+	private volatile long peakQueueDepth;
+	private volatile long tasksRun;
+	private volatile long joinWaitNanos;
+	private volatile int maximumJoinDepth;
+	private volatile long nestedDrainNanos;
+	private volatile long joinDepthEscapes;
+	
+	/*
+	 * Written by producers
+	 */
+	private final LongAdder rejectedTasks = new LongAdder();
+	private final LongAdder droppedTasks = new LongAdder();
+	private final LongAdder callerRunTasks = new LongAdder();
+	private final LongAdder producerBlockedNanos = new LongAdder();
+	
+	Metrics(LongSupplier queueDepth, Supplier<Map<String, OwnerUsage>> ownerUsage) {
+		this.queueDepth = queueDepth;
+		this.ownerUsage = ownerUsage;
+		try {
+			objectName = new ObjectName("space.arim.deadlockfreemc:type=DeadlockFree,name=" + INSTANCE_IDS.incrementAndGet());
+		} catch (JMException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	void registerMBean() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		} catch (JMException ex) {
+			throw new IllegalStateException("Unable to register metrics with JMX", ex);
+		}
+	}
+	
+	void unregisterMBean() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException ex) {
+			throw new IllegalStateException("Unable to unregister metrics from JMX", ex);
+		}
+	}
+	
+	void recordQueueDepth(long depth) {
+		if (depth > peakQueueDepth) {
+			peakQueueDepth = depth;
+		}
+	}
+	
+	/**
+	 * Records a task run
+	 * 
+	 * @param queuedAt the nano time when the task was queued, or 0 if unknown
+	 * @param startedAt the nano time when the task started running
+	 * @param finishedAt the nano time when the task finished running
+	 */
+	void recordTask(long queuedAt, long startedAt, long finishedAt) {
+		if (queuedAt != 0L) {
+			queueDelays.record(startedAt - queuedAt);
+		}
+		runTimes.record(finishedAt - startedAt);
+		tasksRun++;
+	}
+	
+	void recordJoinWait(long nanos) {
+		joinWaitNanos += nanos;
+	}
+	
+	void recordJoinDepth(int depth) {
+		if (depth > maximumJoinDepth) {
+			maximumJoinDepth = depth;
+		}
+	}
+	
+	void recordNestedDrain(long nanos) {
+		nestedDrainNanos += nanos;
+	}
+	
+	void recordJoinDepthEscape() {
+		joinDepthEscapes++;
+	}
+	
+	void recordRejection() {
+		rejectedTasks.increment();
+	}
+	
+	void recordDrop() {
+		droppedTasks.increment();
+	}
+	
+	void recordCallerRun() {
+		callerRunTasks.increment();
+	}
+	
+	void recordProducerBlocked(long nanos) {
+		producerBlockedNanos.add(nanos);
+	}
+	
+	@Override
+	public long getQueueDepth() {
+		return queueDepth.getAsLong();
+	}
+	
+	@Override
+	public long getPeakQueueDepth() {
+		return peakQueueDepth;
+	}
+	
+	@Override
+	public long getTasksRun() {
+		return tasksRun;
+	}
+	
+	@Override
+	public LatencyHistogram getQueueDelays() {
+		return queueDelays.snapshot();
+	}
+	
+	@Override
+	public LatencyHistogram getRunTimes() {
+		return runTimes.snapshot();
+	}
+	
+	@Override
+	public long getJoinWaitNanos() {
+		return joinWaitNanos;
+	}
+	
+	@Override
+	public int getMaximumJoinDepth() {
+		return maximumJoinDepth;
+	}
+	
+	@Override
+	public long getNestedDrainNanos() {
+		return nestedDrainNanos;
+	}
+	
+	@Override
+	public long getJoinDepthEscapes() {
+		return joinDepthEscapes;
+	}
+	
+	@Override
+	public Map<String, OwnerUsage> getOwnerUsage() {
+		return ownerUsage.get();
+	}
+	
+	@Override
+	public long getRejectedTasks() {
+		return rejectedTasks.sum();
+	}
+	
+	@Override
+	public long getDroppedTasks() {
+		return droppedTasks.sum();
+	}
+	
+	@Override
+	public long getCallerRunTasks() {
+		return callerRunTasks.sum();
+	}
+	
+	@Override
+	public long getProducerBlockedNanos() {
+		return producerBlockedNanos.sum();
+	}
+	
+	@Override
+	public long getQueueDelay50thPercentile() {
+		return getQueueDelays().getPercentile(50D);
+	}
+	
+	@Override
+	public long getQueueDelay99thPercentile() {
+		return getQueueDelays().getPercentile(99D);
+	}
+	
+	@Override
+	public long[] getQueueDelayBuckets() {
+		return getQueueDelays().getBucketCounts();
+	}
+	
+	@Override
+	public long getRunTime50thPercentile() {
+		return getRunTimes().getPercentile(50D);
+	}
+	
+	@Override
+	public long getRunTime99thPercentile() {
+		return getRunTimes().getPercentile(99D);
+	}
+	
+	@Override
+	public long[] getRunTimeBuckets() {
+		return getRunTimes().getBucketCounts();
+	}
+
+}
@@ -0,0 +1,496 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Predicate;
+
+/**
+ * Unbounded multi-producer, single-consumer queue built from linked array chunks. <br>
+ * <br>
+ * Producers claim a position with a single atomic increment of a queue-wide index, then write
+ * to the chunk holding it. The producer which first needs a new chunk links it while briefly
+ * excluding other producers needing a chunk past the current one. The consumer never retries
+ * or spins, so {@link #poll()} is wait-free. <br>
+ * <br>
+ * Chunks which the consumer has drained are cleared and kept for reuse, up to {@link #POOLED_CHUNKS}.
+ * As long as the consumer keeps up with producers, the queue allocates nothing once warmed up. <br>
+ * <br>
+ * A slot which has been claimed but not yet written is seen by the consumer as the end
+ * of the queue. Callers must therefore wake the consumer <i>after</i> offering, as
+ * {@code AbstractImplementation} does through {@link WaitState}. <br>
+ * <br>
+ * Each element may carry a timestamp, stored alongside it without extra allocation. A chunk
+ * only allocates space for timestamps once one is given, so untimed queues do not pay for them. <br>
+ * <br>
+ * Once {@link #enableRemoval()} is called, any thread may also take the oldest element
+ * through {@link #removeOldest(Predicate)}. The consumer then claims each slot with a CAS rather
+ * than a plain write, so the cost is only paid by queues which need it.
+ * 
+ * @author A248
+ * 
+ * @param <E> the element type
+ */
+final class MpscChunkedQueue<E> {
+
+	static final int DEFAULT_CHUNK_SIZE = 256;
+	
+	/**
+	 * How many drained chunks are kept for reuse. Must be a power of 2
+	 */
+	static final int POOLED_CHUNKS = 8;
+	
+	/**
+	 * Marks a slot whose element has been taken, by the consumer or by {@link #removeOldest(Predicate)}
+	 */
+	private static final Object TAKEN = new Object();
+	
+	/**
+	 * Value of {@link #producerChunkIndex} while a producer links new chunks
+	 */
+	private static final long ROTATING = -1L;
+	
+	private final int chunkSize;
+	
+	/**
+	 * Total count of positions claimed by producers
+	 */
+	@SuppressWarnings("unused")
+	private volatile long producerIndex;
+	/**
+	 * The last linked chunk
+	 */
+	private volatile Chunk<E> producerChunk;
+	/**
+	 * The index of {@link #producerChunk}, or {@link #ROTATING} while a producer links new chunks
+	 */
+	private volatile long producerChunkIndex;
+	
+	/*
+	 * Drained chunks. Pushed only by the consumer and popped only by the producer holding
+	 * the rotation, so each index is owned by a single thread.
+	 */
+	private final AtomicReferenceArray<Chunk<E>> pooledChunks = new AtomicReferenceArray<>(POOLED_CHUNKS);
+	private int poolPushIndex;
+	private int poolPopIndex;
+	
+	/*
+	 * Consumer-owned state. The head is volatile only so removing threads can find it.
+	 */
+	private volatile Chunk<E> head;
+	private int headIndex;
+	private long polledStamp;
+	
+	/**
+	 * Total count of elements polled. Written only by the consumer, read by any thread.
+	 */
+	private volatile long consumed;
+	
+	private volatile boolean removalRequested;
+	/**
+	 * Written only by the consumer, once it has seen the request and begun claiming slots by CAS
+	 */
+	private volatile boolean removalEnabled;
+	/**
+	 * Elements taken by {@link #removeOldest(Predicate)} which the consumer has not yet skipped past
+	 */
+	private final AtomicLong removedAhead = new AtomicLong();
+	
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<MpscChunkedQueue> PRODUCER_INDEX_UPDATER =
+			AtomicLongFieldUpdater.newUpdater(MpscChunkedQueue.class, "producerIndex");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<MpscChunkedQueue> PRODUCER_CHUNK_INDEX_UPDATER =
+			AtomicLongFieldUpdater.newUpdater(MpscChunkedQueue.class, "producerChunkIndex");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<MpscChunkedQueue> CONSUMED_UPDATER =
+			AtomicLongFieldUpdater.newUpdater(MpscChunkedQueue.class, "consumed");
+	
+	MpscChunkedQueue() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+	
+	MpscChunkedQueue(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive");
+		}
+		this.chunkSize = chunkSize;
+		Chunk<E> initial = new Chunk<>(chunkSize);
+		producerChunk = initial;
+		head = initial;
+	}
+	
+	/**
+	 * Adds an element to the queue. May be called from any thread.
+	 * 
+	 * @param element the element, must not be null
+	 */
+	void offer(E element) {
+		offer(element, 0L);
+	}
+	
+	/**
+	 * Adds an element to the queue with a timestamp. May be called from any thread.
+	 * 
+	 * @param element the element, must not be null
+	 * @param stamp the timestamp, later available through {@link #polledStamp()}
+	 */
+	void offer(E element, long stamp) {
+		long position = PRODUCER_INDEX_UPDATER.getAndIncrement(this);
+		long chunkIndex = position / chunkSize;
+		int index = (int) (position - chunkIndex * chunkSize);
+		Chunk<E> chunk = producerChunk(chunkIndex);
+		// Written before the element is published, and read after it is seen
+		chunk.setStamp(index, stamp);
+		// Volatile write, so a subsequent check whether the consumer is waiting is not reordered before it
+		chunk.slots.set(index, element);
+	}
+	
+	/**
+	 * Finds the chunk with the given index, linking it if needed
+	 * 
+	 * @param chunkIndex the index of the chunk, whose position the caller has claimed
+	 * @return the chunk
+	 */
+	private Chunk<E> producerChunk(long chunkIndex) {
+		for (;;) {
+			long tailIndex = producerChunkIndex;
+			if (tailIndex == ROTATING) {
+				SpinWait.onSpinWait();
+				continue;
+			}
+			Chunk<E> chunk = producerChunk;
+			if (chunk.index != tailIndex) {
+				// A producer linked chunks in between the reads
+				continue;
+			}
+			if (tailIndex >= chunkIndex) {
+				/*
+				 * The caller's claimed but unwritten slot stops the consumer from passing
+				 * the chunk sought, so none of the chunks walked can have been reused
+				 */
+				while (chunk.index != chunkIndex) {
+					chunk = chunk.prev;
+				}
+				return chunk;
+			}
+			if (PRODUCER_CHUNK_INDEX_UPDATER.compareAndSet(this, tailIndex, ROTATING)) {
+				return linkChunks(chunk, chunkIndex);
+			}
+		}
+	}
+	
+	/**
+	 * Links chunks up to the given index. Must only be called while holding the rotation.
+	 * 
+	 * @param tail the last linked chunk
+	 * @param chunkIndex the index of the last chunk to link
+	 * @return the last chunk linked
+	 */
+	private Chunk<E> linkChunks(Chunk<E> tail, long chunkIndex) {
+		for (long index = tail.index + 1; index <= chunkIndex; index++) {
+			Chunk<E> chunk = takePooledChunk();
+			chunk.reuse(index, tail);
+			tail.next = chunk;
+			tail = chunk;
+		}
+		producerChunk = tail;
+		// Releases the rotation
+		producerChunkIndex = chunkIndex;
+		return tail;
+	}
+	
+	private Chunk<E> takePooledChunk() {
+		int poolIndex = poolPopIndex & (POOLED_CHUNKS - 1);
+		Chunk<E> chunk = pooledChunks.get(poolIndex);
+		if (chunk == null) {
+			return new Chunk<>(chunkSize);
+		}
+		pooledChunks.lazySet(poolIndex, null);
+		poolPopIndex++;
+		return chunk;
+	}
+	
+	/**
+	 * Clears a drained chunk and keeps it for reuse, unless enough chunks are already kept.
+	 * Must only be called by the consumer thread.
+	 * 
+	 * @param chunk the drained chunk
+	 */
+	private void poolChunk(Chunk<E> chunk) {
+		int poolIndex = poolPushIndex & (POOLED_CHUNKS - 1);
+		if (pooledChunks.get(poolIndex) != null) {
+			// Chunk becomes garbage
+			return;
+		}
+		for (int index = 0; index < chunkSize; index++) {
+			chunk.slots.lazySet(index, null);
+		}
+		// Publishes the cleared slots to the producer which takes the chunk
+		pooledChunks.lazySet(poolIndex, chunk);
+		poolPushIndex++;
+	}
+	
+	/**
+	 * Removes the head of the queue. Must only be called by the consumer thread.
+	 * 
+	 * @return the head element, or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	E poll() {
+		for (;;) {
+			Chunk<E> chunk = headChunk();
+			if (chunk == null) {
+				return null;
+			}
+			int index = headIndex;
+			Object element = chunk.slots.get(index);
+			if (element == null) {
+				return null;
+			}
+			advance(index);
+			if (element == TAKEN) {
+				// Removed by another thread
+				removedAhead.decrementAndGet();
+				continue;
+			}
+			if (removalEnabled || acknowledgeRemoval()) {
+				if (!chunk.slots.compareAndSet(index, element, TAKEN)) {
+					// Lost the race to a removing thread
+					removedAhead.decrementAndGet();
+					continue;
+				}
+			} else {
+				chunk.slots.lazySet(index, TAKEN);
+			}
+			polledStamp = chunk.getStamp(index);
+			return (E) element;
+		}
+	}
+	
+	private boolean acknowledgeRemoval() {
+		if (removalRequested) {
+			removalEnabled = true;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the chunk holding the consumer's next slot, moving to the next chunk if needed
+	 * 
+	 * @return the chunk, or null if the next chunk is not yet linked
+	 */
+	private Chunk<E> headChunk() {
+		Chunk<E> chunk = head;
+		if (headIndex == chunkSize) {
+			Chunk<E> next = chunk.next;
+			if (next == null) {
+				return null;
+			}
+			// No producer walks back past the head, so drained chunks need not stay reachable
+			next.prev = null;
+			head = next;
+			headIndex = 0;
+			poolChunk(chunk);
+			chunk = next;
+		}
+		return chunk;
+	}
+	
+	private void advance(int index) {
+		headIndex = index + 1;
+		CONSUMED_UPDATER.lazySet(this, consumed + 1);
+	}
+	
+	/**
+	 * Gets the timestamp of the element last returned by {@link #poll()}.
+	 * Must only be called by the consumer thread.
+	 * 
+	 * @return the timestamp given when the element was offered, 0 if none was given
+	 */
+	long polledStamp() {
+		return polledStamp;
+	}
+	
+	/**
+	 * Whether the queue has no element ready to be polled. Must only be called by the consumer thread.
+	 * 
+	 * @return true if {@link #poll()} would currently return null
+	 */
+	boolean isEmpty() {
+		for (;;) {
+			Chunk<E> chunk = headChunk();
+			if (chunk == null) {
+				return true;
+			}
+			int index = headIndex;
+			Object element = chunk.slots.get(index);
+			if (element != TAKEN) {
+				return element == null;
+			}
+			advance(index);
+			removedAhead.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Estimates the amount of elements in the queue. May be called from any thread. <br>
+	 * Elements being concurrently offered may or may not be counted.
+	 * 
+	 * @return the approximate size
+	 */
+	long size() {
+		long consumed = this.consumed;
+		return Math.max(0L, producerIndex - consumed - removedAhead.get());
+	}
+	
+	/**
+	 * Allows {@link #removeOldest()} to be used. May be called from any thread. <br>
+	 * <br>
+	 * Removal takes effect once the consumer next polls, so that no slot can be taken by both.
+	 * Once enabled, removal stays enabled, since a removing thread may still be running.
+	 */
+	void enableRemoval() {
+		removalRequested = true;
+	}
+	
+	/**
+	 * Takes the oldest element which can be found. May be called from any thread. <br>
+	 * <br>
+	 * Nothing is removed until {@link #enableRemoval()} has taken effect. The search stops
+	 * at the first slot claimed but not yet written, so this may fail even though later
+	 * elements exist.
+	 * 
+	 * @return the removed element, or null if none was found
+	 */
+	E removeOldest() {
+		return removeOldest((element) -> true);
+	}
+	
+	/**
+	 * Takes the oldest element accepted by the filter which can be found. Otherwise the same
+	 * as {@link #removeOldest()}. Elements rejected by the filter are skipped and left in place. <br>
+	 * <br>
+	 * The chunks searched may be drained and reused meanwhile. Any element found is nonetheless
+	 * still queued, since a slot is only taken by a successful CAS.
+	 * 
+	 * @param filter which elements may be removed
+	 * @return the removed element, or null if none was found
+	 */
+	@SuppressWarnings("unchecked")
+	E removeOldest(Predicate<? super E> filter) {
+		if (!removalEnabled) {
+			return null;
+		}
+		long position = consumed;
+		Chunk<E> chunk = head;
+		while (position >= chunk.base() + chunkSize) {
+			chunk = chunk.next;
+			if (chunk == null) {
+				return null;
+			}
+		}
+		int index = (int) Math.max(0L, position - chunk.base());
+		for (;;) {
+			for (; index < chunkSize; index++) {
+				Object element = chunk.slots.get(index);
+				if (element == null) {
+					return null;
+				}
+				if (element != TAKEN && filter.test((E) element) && chunk.slots.compareAndSet(index, element, TAKEN)) {
+					removedAhead.incrementAndGet();
+					return (E) element;
+				}
+			}
+			chunk = chunk.next;
+			if (chunk == null) {
+				return null;
+			}
+			index = 0;
+		}
+	}
+	
+	private static final class Chunk<E> {
+	
+		final AtomicReferenceArray<Object> slots;
+		final int size;
+		/**
+		 * Position of the chunk among all chunks linked. Changes only when reused
+		 */
+		volatile long index;
+		/**
+		 * Allocated once a non-zero timestamp is given, then kept when reused
+		 */
+		volatile long[] stamps;
+		volatile Chunk<E> next;
+		/**
+		 * The previously linked chunk, for producers claiming a position behind the last chunk
+		 */
+		Chunk<E> prev;
+		
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Chunk, long[]> STAMPS_UPDATER =
+				AtomicReferenceFieldUpdater.newUpdater(Chunk.class, long[].class, "stamps");
+		
+		Chunk(int size) {
+			this.size = size;
+			slots = new AtomicReferenceArray<>(size);
+		}
+		
+		/**
+		 * Prepares the chunk to be linked after the given one
+		 * 
+		 * @param index the new index
+		 * @param prev the chunk it is linked after
+		 */
+		void reuse(long index, Chunk<E> prev) {
+			this.prev = prev;
+			next = null;
+			this.index = index;
+		}
+		
+		long base() {
+			return index * size;
+		}
+		
+		void setStamp(int index, long stamp) {
+			long[] stamps = this.stamps;
+			if (stamps == null) {
+				if (stamp == 0L) {
+					return;
+				}
+				STAMPS_UPDATER.compareAndSet(this, null, new long[size]);
+				stamps = this.stamps;
+			}
+			// Overwrites any stamp left from before the chunk was reused
+			stamps[index] = stamp;
+		}
+		
+		long getStamp(int index) {
+			long[] stamps = this.stamps;
+			return (stamps == null) ? 0L : stamps[index];
+		}
+	
+	}
+
+}
@@ -0,0 +1,62 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * What to do when a task is submitted to the main thread while the queue is full.
+ * See {@link QueueBound}.
+ * 
+ * @author A248
+ * 
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * The submitting thread waits until there is room in the queue. <br>
+	 * If interrupted while waiting, the task is rejected with a {@link RejectedExecutionException}.
+	 * 
+	 */
+	BLOCK,
+	/**
+	 * The task runs immediately on the submitting thread, if that thread is the main thread
+	 * or the task is marked {@link AsyncSafe}. Other tasks are treated as with {@link #BLOCK}.
+	 * 
+	 */
+	CALLER_RUNS,
+	/**
+	 * The task is rejected with a {@link RejectedExecutionException}
+	 * 
+	 */
+	REJECT,
+	/**
+	 * The oldest queued task of the lowest priority which can be safely discarded is discarded
+	 * to make room. A discarded coalesced command is treated as if superseded, a discarded run
+	 * of a scheduled task is skipped, and a discarded submission or bulk operation completes
+	 * exceptionally with a {@link RejectedExecutionException}. <br>
+	 * <br>
+	 * Tasks given to {@link DeadlockFree#execute(Runnable)}, such as the continuations
+	 * of a {@code CompletableFuture}, are never discarded, since something may depend on them
+	 * running. If no queued task can be discarded, the new task is rejected as with {@link #REJECT}.
+	 * 
+	 */
+	DROP_OLDEST
+
+}
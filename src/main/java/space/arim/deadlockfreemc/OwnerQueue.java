@@ -0,0 +1,108 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The tasks of a single owner, usually a plugin, within a {@link FairQueue}. <br>
+ * <br>
+ * The owner is active while it is in the fair queue's ready queue or being drained.
+ * Producers activate the owner after adding a task, and only the producer which
+ * activates it adds it to the ready queue, so an owner is never in it twice.
+ * 
+ * @author A248
+ * 
+ */
+final class OwnerQueue {
+
+	private final String name;
+	private volatile int weight;
+	private final TaskLanes lanes;
+	private final CoalescedTasks coalescedTasks = new CoalescedTasks();
+	
+	private volatile int active;
+	
+	/*
+	 * Main thread is the only writer
+	 */
+	private volatile long tasksRun;
+	private volatile long nanosUsed;
+	
+	private static final AtomicIntegerFieldUpdater<OwnerQueue> ACTIVE_UPDATER =
+			AtomicIntegerFieldUpdater.newUpdater(OwnerQueue.class, "active");
+	
+	OwnerQueue(String name, int weight, int chunkSize) {
+		this.name = name;
+		this.weight = weight;
+		lanes = new TaskLanes(chunkSize);
+	}
+	
+	String name() {
+		return name;
+	}
+	
+	int weight() {
+		return weight;
+	}
+	
+	void setWeight(int weight) {
+		this.weight = weight;
+	}
+	
+	TaskLanes lanes() {
+		return lanes;
+	}
+	
+	CoalescedTasks coalescedTasks() {
+		return coalescedTasks;
+	}
+	
+	/**
+	 * Marks the owner active
+	 * 
+	 * @return true if the owner was inactive, in which case the caller must add it to the ready queue
+	 */
+	boolean activate() {
+		return active == 0 && ACTIVE_UPDATER.compareAndSet(this, 0, 1);
+	}
+	
+	/**
+	 * Marks the owner inactive. Called by the main thread when it finds the owner has no tasks.
+	 * 
+	 */
+	void deactivate() {
+		active = 0;
+	}
+	
+	/**
+	 * Records a task run on behalf of this owner. Called by the main thread when metrics are enabled.
+	 * 
+	 * @param nanos the run time of the task
+	 */
+	void recordTask(long nanos) {
+		tasksRun++;
+		nanosUsed += nanos;
+	}
+	
+	OwnerUsage usage() {
+		return new OwnerUsage(name, lanes.size(), tasksRun, nanosUsed);
+	}
+
+}
@@ -0,0 +1,86 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * Usage of the main thread queue by a single owner, usually a plugin.
+ * See {@link DeadlockFreeMetrics#getOwnerUsage()}. <br>
+ * <br>
+ * Tasks run and time used are only counted while metrics are enabled. Instances are immutable.
+ * 
+ * @author A248
+ * 
+ */
+public final class OwnerUsage {
+
+	private final String name;
+	private final long queueDepth;
+	private final long tasksRun;
+	private final long nanosUsed;
+	
+	OwnerUsage(String name, long queueDepth, long tasksRun, long nanosUsed) {
+		this.name = name;
+		this.queueDepth = queueDepth;
+		this.tasksRun = tasksRun;
+		this.nanosUsed = nanosUsed;
+	}
+	
+	/**
+	 * Gets the name of the owner. For plugins, this is the plugin name or ID
+	 * 
+	 * @return the owner name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Gets the approximate amount of the owner's tasks currently queued
+	 * 
+	 * @return the current queue depth
+	 */
+	public long getQueueDepth() {
+		return queueDepth;
+	}
+	
+	/**
+	 * Gets the amount of the owner's queued tasks run
+	 * 
+	 * @return the tasks run
+	 */
+	public long getTasksRun() {
+		return tasksRun;
+	}
+	
+	/**
+	 * Gets the main thread time, in nanoseconds, used by the owner's queued tasks
+	 * 
+	 * @return the main thread time used
+	 */
+	public long getNanosUsed() {
+		return nanosUsed;
+	}
+	
+	@Override
+	public String toString() {
+		return "OwnerUsage [name=" + name + ", queueDepth=" + queueDepth + ", tasksRun=" + tasksRun
+				+ ", nanosUsed=" + nanosUsed + "]";
+	}
+
+}
@@ -0,0 +1,223 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The instance through which a single owner, usually a plugin, submits tasks.
+ * Submissions go to the owner's queue. Settings are shared by all owners, so may not be changed
+ * through a view. Everything else is delegated to the implementation.
+ * 
+ * @author A248
+ * 
+ */
+final class OwnerView implements DeadlockFree {
+
+	private final AbstractImplementation impl;
+	private final OwnerQueue owner;
+	private volatile AsyncScope asyncScope;
+	
+	OwnerView(AbstractImplementation impl, OwnerQueue owner) {
+		this.impl = impl;
+		this.owner = owner;
+		asyncScope = new AsyncScope(impl.asyncPool());
+	}
+	
+	OwnerQueue owner() {
+		return owner;
+	}
+	
+	/**
+	 * Accepts async tasks again after {@link #shutdownAsync(long, TimeUnit)}, such as when
+	 * the owner is re-enabled
+	 * 
+	 */
+	void reopenAsync() {
+		if (asyncScope.isClosed()) {
+			asyncScope = new AsyncScope(impl.asyncPool());
+		}
+	}
+	
+	@Override
+	public void execute(Runnable command) {
+		impl.execute(owner, command, Priority.NORMAL);
+	}
+	
+	@Override
+	public void execute(Runnable command, Priority priority) {
+		impl.execute(owner, command, priority);
+	}
+	
+	@Override
+	public <A> void execute(Consumer<? super A> action, A argument) {
+		impl.execute(owner, action, argument);
+	}
+	
+	@Override
+	public <A, B> void execute(BiConsumer<? super A, ? super B> action, A first, B second) {
+		impl.execute(owner, action, first, second);
+	}
+	
+	@Override
+	public CompletableFuture<Void> submit(Runnable command) {
+		Objects.requireNonNull(command, "command");
+		return impl.submit(owner, () -> {
+			command.run();
+			return null;
+		});
+	}
+	
+	@Override
+	public <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+		return impl.submit(owner, supplier);
+	}
+	
+	@Override
+	public void executeAll(Collection<? extends Runnable> commands) {
+		impl.executeAll(owner, commands);
+	}
+	
+	@Override
+	public void executeCoalesced(Object key, Runnable command) {
+		impl.executeCoalesced(owner, key, command);
+	}
+	
+	@Override
+	public <T> CompletableFuture<Void> forEachOnMain(Iterable<T> elements, Consumer<? super T> action) {
+		return impl.submitBulkJob(owner, BulkJob.forEach(elements, action));
+	}
+	
+	@Override
+	public <T, R> CompletableFuture<List<R>> mapOnMain(Iterable<T> elements, Function<? super T, ? extends R> mapper) {
+		return impl.submitBulkJob(owner, BulkJob.map(elements, mapper));
+	}
+	
+	@Override
+	public ScheduledTask schedule(Runnable command, long ticks) {
+		return impl.schedule(owner, command, ticks, 0L);
+	}
+	
+	@Override
+	public ScheduledTask scheduleRepeating(Runnable command, long initialDelayTicks, long periodTicks) {
+		if (periodTicks <= 0L) {
+			throw new IllegalArgumentException("Period must be positive");
+		}
+		return impl.schedule(owner, command, initialDelayTicks, periodTicks);
+	}
+	
+	@Override
+	public <T> Snapshot<T> snapshot(Object key, Supplier<T> supplier, RefreshPolicy policy) {
+		return impl.snapshot(key, supplier, policy);
+	}
+	
+	@Override
+	public Executor async() {
+		return asyncScope.executor();
+	}
+	
+	/**
+	 * Rejects further async tasks from this owner, then waits for its tasks already submitted.
+	 * The async pool, which is shared with other owners, is left running.
+	 * 
+	 */
+	@Override
+	public boolean shutdownAsync(long timeout, TimeUnit unit) throws InterruptedException {
+		return asyncScope.close(timeout, unit);
+	}
+	
+	@Override
+	public boolean isPrimaryThread() {
+		return impl.isPrimaryThread();
+	}
+	
+	@Override
+	public <T> T join(CompletableFuture<T> future) {
+		return impl.join(future);
+	}
+	
+	@Override
+	public <T> T get(Future<T> future) throws InterruptedException, ExecutionException {
+		return impl.get(future);
+	}
+	
+	@Override
+	public <T> T get(Future<T> future, long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		return impl.get(future, timeout, unit);
+	}
+	
+	@Override
+	public void setTickBudget(TickBudget budget) {
+		throw globalSetting();
+	}
+	
+	@Override
+	public TickStats getLastTickStats() {
+		return impl.getLastTickStats();
+	}
+	
+	@Override
+	public void setStallWatchdog(StallWatchdog watchdog) {
+		throw globalSetting();
+	}
+	
+	@Override
+	public void setMaximumJoinDepth(int depth) {
+		throw globalSetting();
+	}
+	
+	@Override
+	public void setQueueBound(QueueBound bound) {
+		throw globalSetting();
+	}
+	
+	@Override
+	public void setMetricsEnabled(boolean enabled) {
+		throw globalSetting();
+	}
+	
+	@Override
+	public DeadlockFreeMetrics getMetrics() {
+		return impl.getMetrics();
+	}
+	
+	private static UnsupportedOperationException globalSetting() {
+		return new UnsupportedOperationException(
+				"Settings are shared by all plugins, so may only be changed through DeadlockFree.getInstance()");
+	}
+	
+	@Override
+	public String toString() {
+		return "OwnerView [owner=" + owner.name() + "]";
+	}
+
+}
@@ -0,0 +1,69 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
+import com.destroystokyo.paper.event.server.ServerTickStartEvent;
+
+/**
+ * Tick source on Paper. Uses the ServerTickStartEvent and ServerTickEndEvent,
+ * the latter providing the time remaining until the next tick.
+ * 
+ * @author A248
+ * 
+ */
+class PaperTickSource implements TickSource {
+
+	private final Plugin plugin;
+	private volatile Listener listener;
+	
+	PaperTickSource(Plugin plugin) {
+		this.plugin = plugin;
+	}
+	
+	@Override
+	public void start(Callback callback) {
+		Listener listener = new Listener() {
+			@SuppressWarnings("unused")
+			@EventHandler
+			public void onTickStart(ServerTickStartEvent evt) {
+				callback.onTickStart();
+			}
+			@SuppressWarnings("unused")
+			@EventHandler
+			public void onTickEnd(ServerTickEndEvent evt) {
+				callback.onTickEnd(evt.getTimeRemaining());
+			}
+		};
+		this.listener = listener;
+		Bukkit.getPluginManager().registerEvents(listener, plugin);
+	}
+	
+	@Override
+	public void stop() {
+		HandlerList.unregisterAll(listener);
+	}
+
+}
@@ -0,0 +1,306 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A chain of stages alternating between the main thread and async threads, run with as few
+ * thread hops as possible. Obtained through {@link DeadlockFree#pipeline()}. <br>
+ * <br>
+ * Chaining {@code thenApplyAsync(..., df)} onto a {@link CompletableFuture} queues each main thread
+ * stage separately when the previous stage completes off the main thread, so a chain of stages waits
+ * on the main thread once per stage. A pipeline instead runs consecutive main thread stages together
+ * as one queued task, and consecutive async stages together as one task for the async executor.
+ * A pipeline whose stages are all on the main thread, for example, is a single queued task. <br>
+ * <br>
+ * Pipelines are immutable: each {@code then} method returns a new pipeline with the stage appended.
+ * A pipeline may be started any number of times, each time running its stages anew.
+ * 
+ * @author A248
+ * 
+ * @param <T> the result type of the last stage
+ */
+public final class Pipeline<T> {
+
+	private final DeadlockFree deadlockFree;
+	/**
+	 * Null to use {@link DeadlockFree#async()}
+	 * 
+	 */
+	private final Executor asyncExecutor;
+	/**
+	 * Previous pipeline, or null for the empty pipeline
+	 * 
+	 */
+	private final Pipeline<?> previous;
+	private final Function<Object, Object> stage;
+	private final boolean mainThread;
+	private final int length;
+	
+	private Pipeline(DeadlockFree deadlockFree, Executor asyncExecutor, Pipeline<?> previous,
+			Function<Object, Object> stage, boolean mainThread, int length) {
+		this.deadlockFree = deadlockFree;
+		this.asyncExecutor = asyncExecutor;
+		this.previous = previous;
+		this.stage = stage;
+		this.mainThread = mainThread;
+		this.length = length;
+	}
+	
+	static Pipeline<Void> empty(DeadlockFree deadlockFree) {
+		return new Pipeline<>(deadlockFree, null, null, null, false, 0);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <R> Pipeline<R> append(Function<? super T, ? extends R> stage, boolean mainThread) {
+		Objects.requireNonNull(stage, "stage");
+		return new Pipeline<>(deadlockFree, asyncExecutor, this, (Function<Object, Object>) stage, mainThread, length + 1);
+	}
+	
+	/**
+	 * Creates a pipeline identical to this one, except running async stages using the specified executor
+	 * rather than {@link DeadlockFree#async()}
+	 * 
+	 * @param asyncExecutor the executor of async stages
+	 * @return the pipeline
+	 */
+	public Pipeline<T> withAsyncExecutor(Executor asyncExecutor) {
+		Objects.requireNonNull(asyncExecutor, "asyncExecutor");
+		return new Pipeline<>(deadlockFree, asyncExecutor, previous, stage, mainThread, length);
+	}
+	
+	/**
+	 * Appends a stage run on the main thread
+	 * 
+	 * @param <R> the result type of the stage
+	 * @param function the stage, given the result of the previous stage, or null if it is the first
+	 * @return the pipeline with the stage appended
+	 */
+	public <R> Pipeline<R> thenApplySync(Function<? super T, ? extends R> function) {
+		return append(function, true);
+	}
+	
+	/**
+	 * Appends a stage run on an async thread
+	 * 
+	 * @param <R> the result type of the stage
+	 * @param function the stage, given the result of the previous stage, or null if it is the first
+	 * @return the pipeline with the stage appended
+	 */
+	public <R> Pipeline<R> thenApplyAsync(Function<? super T, ? extends R> function) {
+		return append(function, false);
+	}
+	
+	/**
+	 * Appends a stage run on the main thread, with no result
+	 * 
+	 * @param action the stage, given the result of the previous stage, or null if it is the first
+	 * @return the pipeline with the stage appended
+	 */
+	public Pipeline<Void> thenAcceptSync(Consumer<? super T> action) {
+		Objects.requireNonNull(action, "action");
+		return append(toFunction(action), true);
+	}
+	
+	/**
+	 * Appends a stage run on an async thread, with no result
+	 * 
+	 * @param action the stage, given the result of the previous stage, or null if it is the first
+	 * @return the pipeline with the stage appended
+	 */
+	public Pipeline<Void> thenAcceptAsync(Consumer<? super T> action) {
+		Objects.requireNonNull(action, "action");
+		return append(toFunction(action), false);
+	}
+	
+	private static <T> Function<T, Void> toFunction(Consumer<? super T> action) {
+		return (value) -> {
+			action.accept(value);
+			return null;
+		};
+	}
+	
+	/**
+	 * Starts running the stages. If the first stage is a main thread stage and this is called
+	 * on the main thread, the main thread stages up to the first async stage run immediately.
+	 * 
+	 * @return a future completed with the result of the last stage, or exceptionally if a stage
+	 * throws an exception, in which case later stages do not run
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public CompletableFuture<T> start() {
+		Function<Object, Object>[] stages = new Function[length];
+		boolean[] onMainThread = new boolean[length];
+		boolean anyAsync = false;
+		Pipeline<?> pipeline = this;
+		for (int n = length - 1; n >= 0; n--) {
+			stages[n] = pipeline.stage;
+			onMainThread[n] = pipeline.mainThread;
+			anyAsync |= !pipeline.mainThread;
+			pipeline = pipeline.previous;
+		}
+		Executor asyncExecutor = this.asyncExecutor;
+		if (asyncExecutor == null && anyAsync) {
+			asyncExecutor = deadlockFree.async();
+		}
+		Run<T> run = new Run<>(deadlockFree, asyncExecutor, stages, onMainThread);
+		run.dispatch();
+		return run.future;
+	}
+	
+	/**
+	 * A single run of a pipeline. The same task is queued for each hop between threads,
+	 * and runs every stage until the next hop. <br>
+	 * <br>
+	 * Joining the future on the main thread promotes a pending hop to the main thread.
+	 * The hop is then queued twice, in its lane and promoted, so hops to the main thread are
+	 * counted, and each runs once.
+	 * 
+	 */
+	private static final class Run<T> implements PromotableTask, Discardable {
+	
+		private final DeadlockFree deadlockFree;
+		private final Executor asyncExecutor;
+		private final Function<Object, Object>[] stages;
+		private final boolean[] onMainThread;
+		final CompletableFuture<T> future = new RunFuture<>(this);
+		
+		/*
+		 * Handed between threads along with the task, through the queue or executor
+		 */
+		private int index;
+		private Object value;
+		private int mainThreadHopsRun;
+		/**
+		 * Written after {@link #index} and {@link #value}, which it publishes to the main thread
+		 * 
+		 */
+		private volatile int mainThreadHops;
+		
+		private long queuedStamp;
+		/**
+		 * Written after {@link #queuedStamp}, which it publishes
+		 * 
+		 */
+		private volatile OwnerQueue owner;
+		
+		Run(DeadlockFree deadlockFree, Executor asyncExecutor, Function<Object, Object>[] stages, boolean[] onMainThread) {
+			this.deadlockFree = deadlockFree;
+			this.asyncExecutor = asyncExecutor;
+			this.stages = stages;
+			this.onMainThread = onMainThread;
+		}
+		
+		@SuppressWarnings("unchecked")
+		void dispatch() {
+			if (index == stages.length) {
+				future.complete((T) value);
+				return;
+			}
+			try {
+				if (onMainThread[index]) {
+					// Only one thread dispatches at a time
+					mainThreadHops++;
+					deadlockFree.execute(this);
+				} else {
+					asyncExecutor.execute(this);
+				}
+			} catch (RejectedExecutionException ex) {
+				future.completeExceptionally(ex);
+			}
+		}
+		
+		@Override
+		public void run() {
+			if (future.isDone()) {
+				// Cancelled
+				return;
+			}
+			boolean side = onMainThread[index];
+			if (side) {
+				int hops = mainThreadHops;
+				if (mainThreadHopsRun == hops) {
+					// Already run, while queued elsewhere
+					return;
+				}
+				mainThreadHopsRun = hops;
+			}
+			try {
+				do {
+					value = stages[index++].apply(value);
+				} while (index < stages.length && onMainThread[index] == side);
+			} catch (Throwable ex) {
+				future.completeExceptionally(ex);
+				return;
+			}
+			dispatch();
+		}
+		
+		@Override
+		public boolean isRevoked() {
+			return future.isDone() || mainThreadHopsRun == mainThreadHops;
+		}
+		
+		@Override
+		public void queued(OwnerQueue owner, long stamp) {
+			queuedStamp = stamp;
+			this.owner = owner;
+		}
+		
+		@Override
+		public OwnerQueue owner() {
+			return owner;
+		}
+		
+		@Override
+		public long queuedStamp() {
+			return queuedStamp;
+		}
+		
+		@Override
+		public void discard() {
+			future.completeExceptionally(new RejectedExecutionException("Dropped from the full main thread queue"));
+		}
+	
+	}
+	
+	private static final class RunFuture<T> extends CompletableFuture<T> implements PromotableFuture {
+	
+		private final Run<T> run;
+		
+		RunFuture(Run<T> run) {
+			this.run = run;
+		}
+		
+		@Override
+		public void forEachPromotable(Consumer<? super PromotableTask> action) {
+			if (!run.isRevoked()) {
+				action.accept(run);
+			}
+		}
+	
+	}
+
+}
@@ -0,0 +1,49 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * Priority of a task queued for the main thread. See {@link DeadlockFree#execute(Runnable, Priority)}. <br>
+ * <br>
+ * Higher priority tasks run first. So that lower priorities cannot starve, a lower priority
+ * task which has been passed over many times is given a turn. A queued task which the main
+ * thread is joining runs before all of these.
+ * 
+ * @author A248
+ * 
+ */
+public enum Priority {
+
+	/**
+	 * For latency sensitive work, such as completing a check which a player is waiting on
+	 * 
+	 */
+	HIGH,
+	/**
+	 * The default priority
+	 * 
+	 */
+	NORMAL,
+	/**
+	 * For work which may be delayed, such as cosmetic updates
+	 * 
+	 */
+	LOW
+
+}
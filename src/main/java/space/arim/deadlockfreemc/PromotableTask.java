@@ -0,0 +1,54 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * A queued task on which a future depends. When the main thread joins such a future, the task is
+ * promoted: it runs next, ahead of every lane and owner. The task stays in its lane meanwhile,
+ * as a tombstone once it has run, so it must be revoked after running.
+ * 
+ * @author A248
+ * 
+ */
+interface PromotableTask extends Revocable {
+
+	/**
+	 * Records where the task is queued. Called before the task is offered to its lane,
+	 * from the thread queueing it
+	 * 
+	 * @param owner the owner of the task
+	 * @param stamp the timestamp of queueing
+	 */
+	void queued(OwnerQueue owner, long stamp);
+	
+	/**
+	 * Gets the owner the task was last queued for
+	 * 
+	 * @return the owner, or null if never queued
+	 */
+	OwnerQueue owner();
+	
+	/**
+	 * Gets the timestamp the task was last queued at
+	 * 
+	 * @return the timestamp
+	 */
+	long queuedStamp();
+
+}
@@ -0,0 +1,106 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Objects;
+
+/**
+ * Limits how many tasks may be queued for the main thread. <br>
+ * <br>
+ * When the main thread lags, asynchronous producers would otherwise queue tasks without limit,
+ * until heap pressure causes long GC pauses. With a bound, a submission finding the queue full
+ * is handled by the {@link OverflowPolicy}. <br>
+ * <br>
+ * A batch counts as a single task. A coalesced command which replaces a pending command
+ * for the same key takes no room in the queue, so it is never subject to the policy. <br>
+ * <br>
+ * Instances are immutable.
+ * 
+ * @author A248
+ * 
+ */
+public final class QueueBound {
+
+	private static final QueueBound UNBOUNDED = new QueueBound(Integer.MAX_VALUE, OverflowPolicy.BLOCK);
+	
+	private final int capacity;
+	private final OverflowPolicy policy;
+	
+	private QueueBound(int capacity, OverflowPolicy policy) {
+		this.capacity = capacity;
+		this.policy = policy;
+	}
+	
+	/**
+	 * Gets a bound which never limits the queue. This is the default.
+	 * 
+	 * @return the unbounded bound
+	 */
+	public static QueueBound unbounded() {
+		return UNBOUNDED;
+	}
+	
+	/**
+	 * Creates a bound of the specified capacity
+	 * 
+	 * @param capacity the maximum amount of queued tasks
+	 * @param policy what to do once the capacity is reached
+	 * @return the bound
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 */
+	public static QueueBound of(int capacity, OverflowPolicy policy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		return new QueueBound(capacity, Objects.requireNonNull(policy, "policy"));
+	}
+	
+	/**
+	 * Whether this bound is unbounded
+	 * 
+	 * @return true if unbounded, false otherwise
+	 */
+	public boolean isUnbounded() {
+		return this == UNBOUNDED;
+	}
+	
+	/**
+	 * Gets the capacity. {@code Integer.MAX_VALUE} if unbounded
+	 * 
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Gets the overflow policy
+	 * 
+	 * @return the overflow policy
+	 */
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+	
+	@Override
+	public String toString() {
+		return "QueueBound [capacity=" + capacity + ", policy=" + policy + "]";
+	}
+
+}
@@ -0,0 +1,116 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * Determines when a {@link Snapshot} is recomputed, and when it is evicted for being idle. <br>
+ * <br>
+ * Regardless of the policy, a snapshot is recomputed when invalidated. A snapshot not read for
+ * the maximum idle period stops being recomputed, and is evicted. Reading an evicted snapshot
+ * returns its last value and resumes recomputation. <br>
+ * <br>
+ * Instances are immutable.
+ * 
+ * @author A248
+ * 
+ */
+public final class RefreshPolicy {
+
+	private static final long DEFAULT_MAXIMUM_IDLE_TICKS = 1200L;
+	private static final RefreshPolicy EVERY_TICK = new RefreshPolicy(1L, DEFAULT_MAXIMUM_IDLE_TICKS);
+	
+	private final long periodTicks;
+	private final long maximumIdleTicks;
+	
+	private RefreshPolicy(long periodTicks, long maximumIdleTicks) {
+		this.periodTicks = periodTicks;
+		this.maximumIdleTicks = maximumIdleTicks;
+	}
+	
+	/**
+	 * Gets a policy recomputing the value at the start of every tick
+	 * 
+	 * @return the every tick policy
+	 */
+	public static RefreshPolicy everyTick() {
+		return EVERY_TICK;
+	}
+	
+	/**
+	 * Creates a policy recomputing the value every specified amount of ticks
+	 * 
+	 * @param ticks the period in ticks
+	 * @return the policy
+	 * @throws IllegalArgumentException if the period is not positive
+	 */
+	public static RefreshPolicy everyTicks(long ticks) {
+		if (ticks <= 0L) {
+			throw new IllegalArgumentException("Period must be positive");
+		}
+		return new RefreshPolicy(ticks, DEFAULT_MAXIMUM_IDLE_TICKS);
+	}
+	
+	/**
+	 * Gets a policy recomputing the value only when invalidated
+	 * 
+	 * @return the policy
+	 */
+	public static RefreshPolicy whenInvalidated() {
+		return new RefreshPolicy(0L, DEFAULT_MAXIMUM_IDLE_TICKS);
+	}
+	
+	/**
+	 * Creates a policy identical to this one, except evicting the snapshot once it has
+	 * not been read for the specified amount of ticks. The default is 1200 ticks, one minute.
+	 * 
+	 * @param ticks the maximum idle ticks
+	 * @return the policy
+	 * @throws IllegalArgumentException if the amount is not positive
+	 */
+	public RefreshPolicy withMaximumIdle(long ticks) {
+		if (ticks <= 0L) {
+			throw new IllegalArgumentException("Maximum idle ticks must be positive");
+		}
+		return new RefreshPolicy(periodTicks, ticks);
+	}
+	
+	/**
+	 * Gets the period in ticks at which the value is recomputed, 0 if only when invalidated
+	 * 
+	 * @return the period in ticks
+	 */
+	public long getPeriodTicks() {
+		return periodTicks;
+	}
+	
+	/**
+	 * Gets the amount of ticks after which a snapshot which has not been read is evicted
+	 * 
+	 * @return the maximum idle ticks
+	 */
+	public long getMaximumIdleTicks() {
+		return maximumIdleTicks;
+	}
+	
+	@Override
+	public String toString() {
+		return "RefreshPolicy [periodTicks=" + periodTicks + ", maximumIdleTicks=" + maximumIdleTicks + "]";
+	}
+
+}
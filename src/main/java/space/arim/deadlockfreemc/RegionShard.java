@@ -0,0 +1,138 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The implementation for a single region of a {@link RegionizedImpl}, with its own queue,
+ * wait state and tick source. Its primary thread is the thread which ticks it. <br>
+ * <br>
+ * A shard idle for long enough retires itself, so that regions no longer in use do not keep
+ * their tick source and queue forever. Retiring only succeeds while no thread is submitting
+ * through the region key, see {@link #enter()}, so no task can arrive once it has begun.
+ * 
+ * @author A248
+ * 
+ */
+final class RegionShard extends AbstractImplementation {
+
+	private final Object regionKey;
+	private final ThreadLocal<RegionShard> currentShard;
+	private final Consumer<RegionShard> evictor;
+	private final int evictAfterIdleTicks;
+	
+	/**
+	 * Threads currently submitting through the region key, or {@link #RETIRED}
+	 * 
+	 */
+	private final AtomicInteger submitters = new AtomicInteger();
+	private static final int RETIRED = -1;
+	/**
+	 * Whether a thread has submitted through the region key since the last tick
+	 * 
+	 */
+	private volatile boolean used;
+	/**
+	 * Consecutive idle ticks. Main thread only
+	 * 
+	 */
+	private int idleTicks;
+	
+	/**
+	 * Creates the shard. The tick source must not begin ticking until construction is complete,
+	 * since the shard records itself as current on its tick thread
+	 * 
+	 * @param regionKey the region key
+	 * @param tickSource the tick source of the region
+	 * @param asyncPool the async pool shared by all regions
+	 * @param queueChunkSize the chunk size of task queues
+	 * @param currentShard the shard of each tick thread
+	 * @param evictor removes and stops the shard once retired, called on its tick thread
+	 * @param evictAfterIdleTicks how many consecutive idle ticks before the shard retires, or 0 to never retire
+	 */
+	RegionShard(Object regionKey, TickSource tickSource, AsyncPool asyncPool, int queueChunkSize,
+			ThreadLocal<RegionShard> currentShard, Consumer<RegionShard> evictor, int evictAfterIdleTicks) {
+		super(tickSource, asyncPool, queueChunkSize);
+		this.regionKey = regionKey;
+		this.currentShard = currentShard;
+		this.evictor = evictor;
+		this.evictAfterIdleTicks = evictAfterIdleTicks;
+	}
+	
+	Object regionKey() {
+		return regionKey;
+	}
+	
+	/**
+	 * Registers the calling thread as submitting through the region key. If successful,
+	 * must be followed by {@link #exit()}.
+	 * 
+	 * @return true if registered, false if the shard has retired and another must be used
+	 */
+	boolean enter() {
+		int count;
+		do {
+			count = submitters.get();
+			if (count == RETIRED) {
+				return false;
+			}
+		} while (!submitters.compareAndSet(count, count + 1));
+		used = true;
+		return true;
+	}
+	
+	void exit() {
+		submitters.decrementAndGet();
+	}
+	
+	@Override
+	void mainThreadIdentified() {
+		currentShard.set(this);
+	}
+	
+	@Override
+	void afterTick() {
+		if (evictAfterIdleTicks == 0) {
+			return;
+		}
+		if (used || !isIdle()) {
+			used = false;
+			idleTicks = 0;
+			return;
+		}
+		if (++idleTicks < evictAfterIdleTicks || !submitters.compareAndSet(0, RETIRED)) {
+			return;
+		}
+		// No submission can now begin. Any which finished meanwhile are run as the shard stops
+		evictor.accept(this);
+	}
+	
+	@Override
+	public boolean isPrimaryThread() {
+		return isMainThread();
+	}
+	
+	@Override
+	public String toString() {
+		return "RegionShard [regionKey=" + regionKey + "]";
+	}
+
+}
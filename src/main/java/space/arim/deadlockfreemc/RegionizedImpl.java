@@ -0,0 +1,373 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Implementation for regionized servers, which tick regions on several threads. <br>
+ * <br>
+ * Each region has a {@link RegionShard}, with its own queue, wait state and tick source,
+ * created when the region is first used. {@link #execute(Object, Runnable)} routes tasks to a region.
+ * Other methods use the shard of the calling thread, if it ticks a region, or else the global region.
+ * In particular, {@code join} on a region thread drains only that region's queue, so regions never
+ * wait on each other. <br>
+ * <br>
+ * Each region must be ticked by a single thread, which must not tick other regions. Settings such as
+ * the tick budget apply to all regions, while metrics and tick statistics are per region. <br>
+ * <br>
+ * A region other than the global region is evicted, stopping its tick source, once it has had nothing
+ * queued, scheduled or cached for {@link #DEFAULT_EVICT_AFTER_IDLE_TICKS} ticks. It is created again
+ * when next used.
+ * 
+ * @author A248
+ * 
+ */
+class RegionizedImpl implements ManagedDeadlockFree {
+
+	/**
+	 * One minute at 20 ticks per second
+	 * 
+	 */
+	static final int DEFAULT_EVICT_AFTER_IDLE_TICKS = 20 * 60;
+	
+	private final Function<Object, ? extends TickSource> tickSources;
+	private final int queueChunkSize;
+	private final int evictAfterIdleTicks;
+	private final ConcurrentMap<Object, RegionShard> shards = new ConcurrentHashMap<>();
+	private final ThreadLocal<RegionShard> currentShard = new ThreadLocal<>();
+	private final RegionShard global;
+	/**
+	 * Shared by all shards
+	 * 
+	 */
+	private final AsyncPool asyncPool = new AsyncPool();
+	private final AsyncScope asyncScope = new AsyncScope(asyncPool);
+	
+	/*
+	 * Settings applied to every shard. Guarded by this
+	 */
+	private TickBudget tickBudget = TickBudget.unlimited();
+	private int maximumJoinDepth = AbstractImplementation.DEFAULT_MAXIMUM_JOIN_DEPTH;
+	private StallWatchdog stallWatchdog = StallWatchdog.disabled();
+	private QueueBound queueBound = QueueBound.unbounded();
+	private boolean metricsEnabled;
+	private volatile boolean shutdown;
+	
+	RegionizedImpl(Object globalRegionKey, Function<Object, ? extends TickSource> tickSources) {
+		this(globalRegionKey, tickSources, MpscChunkedQueue.DEFAULT_CHUNK_SIZE, DEFAULT_EVICT_AFTER_IDLE_TICKS);
+	}
+	
+	/**
+	 * Creates the implementation
+	 * 
+	 * @param globalRegionKey the key of the region used by threads which do not tick a region
+	 * @param tickSources creates the tick source of each region, given its key
+	 * @param queueChunkSize the chunk size of task queues
+	 * @param evictAfterIdleTicks how many consecutive idle ticks before a region is evicted
+	 */
+	RegionizedImpl(Object globalRegionKey, Function<Object, ? extends TickSource> tickSources,
+			int queueChunkSize, int evictAfterIdleTicks) {
+		this.tickSources = tickSources;
+		this.queueChunkSize = queueChunkSize;
+		this.evictAfterIdleTicks = evictAfterIdleTicks;
+		global = createShard(globalRegionKey, 0);
+	}
+	
+	private RegionShard shard(Object regionKey) {
+		RegionShard shard = shards.get(regionKey);
+		return (shard != null) ? shard : createShard(regionKey, evictAfterIdleTicks);
+	}
+	
+	private synchronized RegionShard createShard(Object regionKey, int evictAfterIdleTicks) {
+		RegionShard existing = shards.get(regionKey);
+		if (existing != null) {
+			return existing;
+		}
+		if (shutdown) {
+			throw new RejectedExecutionException("This DeadlockFree instance has been shut down");
+		}
+		DeferredTickSource tickSource = new DeferredTickSource(tickSources.apply(regionKey));
+		RegionShard shard = new RegionShard(regionKey, tickSource, asyncPool, queueChunkSize,
+				currentShard, this::evict, evictAfterIdleTicks);
+		shard.setTickBudget(tickBudget);
+		shard.setMaximumJoinDepth(maximumJoinDepth);
+		shard.setStallWatchdog(stallWatchdog);
+		shard.setQueueBound(queueBound);
+		shard.setMetricsEnabled(metricsEnabled);
+		shards.put(regionKey, shard);
+		tickSource.begin();
+		return shard;
+	}
+	
+	/**
+	 * Removes and stops a retired shard. Called on its tick thread
+	 * 
+	 * @param shard the shard
+	 */
+	private void evict(RegionShard shard) {
+		shards.remove(shard.regionKey(), shard);
+		shard.stop();
+	}
+	
+	/**
+	 * Gets the shard of the calling thread, or the global shard
+	 * 
+	 * @return the shard to use
+	 */
+	private RegionShard route() {
+		RegionShard shard = currentShard.get();
+		if (shard == null) {
+			return global;
+		}
+		// The region's shard was evicted while the thread still ticks it
+		return (shard.isShutdown()) ? shard(shard.regionKey()) : shard;
+	}
+	
+	@Override
+	public void execute(Runnable command) {
+		route().execute(command);
+	}
+	
+	@Override
+	public void execute(Object regionKey, Runnable command) {
+		Objects.requireNonNull(regionKey, "regionKey");
+		for (;;) {
+			RegionShard shard = shard(regionKey);
+			if (shard.enter()) {
+				try {
+					shard.execute(command);
+				} finally {
+					shard.exit();
+				}
+				return;
+			}
+			// Retired, so make way for a new shard
+			shards.remove(regionKey, shard);
+		}
+	}
+	
+	@Override
+	public void execute(Runnable command, Priority priority) {
+		route().execute(command, priority);
+	}
+	
+	@Override
+	public <A> void execute(Consumer<? super A> action, A argument) {
+		route().execute(action, argument);
+	}
+	
+	@Override
+	public <A, B> void execute(BiConsumer<? super A, ? super B> action, A first, B second) {
+		route().execute(action, first, second);
+	}
+	
+	@Override
+	public CompletableFuture<Void> submit(Runnable command) {
+		return route().submit(command);
+	}
+	
+	@Override
+	public <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+		return route().submit(supplier);
+	}
+	
+	@Override
+	public void executeAll(Collection<? extends Runnable> commands) {
+		route().executeAll(commands);
+	}
+	
+	@Override
+	public void executeCoalesced(Object key, Runnable command) {
+		route().executeCoalesced(key, command);
+	}
+	
+	@Override
+	public <T> CompletableFuture<Void> forEachOnMain(Iterable<T> elements, Consumer<? super T> action) {
+		return route().forEachOnMain(elements, action);
+	}
+	
+	@Override
+	public <T, R> CompletableFuture<List<R>> mapOnMain(Iterable<T> elements, Function<? super T, ? extends R> mapper) {
+		return route().mapOnMain(elements, mapper);
+	}
+	
+	@Override
+	public ScheduledTask schedule(Runnable command, long ticks) {
+		return route().schedule(command, ticks);
+	}
+	
+	@Override
+	public ScheduledTask scheduleRepeating(Runnable command, long initialDelayTicks, long periodTicks) {
+		return route().scheduleRepeating(command, initialDelayTicks, periodTicks);
+	}
+	
+	@Override
+	public <T> Snapshot<T> snapshot(Object key, Supplier<T> supplier, RefreshPolicy policy) {
+		return route().snapshot(key, supplier, policy);
+	}
+	
+	@Override
+	public Executor async() {
+		return asyncScope.executor();
+	}
+	
+	@Override
+	public boolean shutdownAsync(long timeout, TimeUnit unit) throws InterruptedException {
+		return asyncScope.await(timeout, unit);
+	}
+	
+	@Override
+	public boolean isPrimaryThread() {
+		return currentShard.get() != null;
+	}
+	
+	@Override
+	public <T> T join(CompletableFuture<T> future) {
+		return route().join(future);
+	}
+	
+	@Override
+	public <T> T get(Future<T> future) throws InterruptedException, ExecutionException {
+		return route().get(future);
+	}
+	
+	@Override
+	public <T> T get(Future<T> future, long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		return route().get(future, timeout, unit);
+	}
+	
+	@Override
+	public synchronized void setTickBudget(TickBudget budget) {
+		tickBudget = Objects.requireNonNull(budget, "budget");
+		for (RegionShard shard : shards.values()) {
+			shard.setTickBudget(budget);
+		}
+	}
+	
+	@Override
+	public TickStats getLastTickStats() {
+		return route().getLastTickStats();
+	}
+	
+	@Override
+	public synchronized void setStallWatchdog(StallWatchdog watchdog) {
+		stallWatchdog = Objects.requireNonNull(watchdog, "watchdog");
+		for (RegionShard shard : shards.values()) {
+			shard.setStallWatchdog(watchdog);
+		}
+	}
+	
+	@Override
+	public synchronized void setMaximumJoinDepth(int depth) {
+		if (depth <= 0) {
+			throw new IllegalArgumentException("Maximum join depth must be positive");
+		}
+		maximumJoinDepth = depth;
+		for (RegionShard shard : shards.values()) {
+			shard.setMaximumJoinDepth(depth);
+		}
+	}
+	
+	@Override
+	public synchronized void setQueueBound(QueueBound bound) {
+		queueBound = Objects.requireNonNull(bound, "bound");
+		for (RegionShard shard : shards.values()) {
+			shard.setQueueBound(bound);
+		}
+	}
+	
+	@Override
+	public synchronized void setMetricsEnabled(boolean enabled) {
+		metricsEnabled = enabled;
+		for (RegionShard shard : shards.values()) {
+			shard.setMetricsEnabled(enabled);
+		}
+	}
+	
+	@Override
+	public DeadlockFreeMetrics getMetrics() {
+		return route().getMetrics();
+	}
+	
+	@Override
+	public void shutdown() {
+		synchronized (this) {
+			if (shutdown) {
+				return;
+			}
+			shutdown = true;
+		}
+		for (RegionShard shard : shards.values()) {
+			shard.stop();
+		}
+		asyncPool.initiateShutdown();
+	}
+	
+	@Override
+	public boolean isShutdown() {
+		return shutdown;
+	}
+	
+	/**
+	 * Holds back the start of a tick source until the shard using it is fully constructed
+	 * 
+	 */
+	private static final class DeferredTickSource implements TickSource {
+	
+		private final TickSource delegate;
+		private Callback callback;
+		
+		DeferredTickSource(TickSource delegate) {
+			this.delegate = delegate;
+		}
+		
+		@Override
+		public void start(Callback callback) {
+			this.callback = callback;
+		}
+		
+		void begin() {
+			delegate.start(callback);
+		}
+		
+		@Override
+		public void stop() {
+			delegate.stop();
+		}
+	
+	}
+
+}
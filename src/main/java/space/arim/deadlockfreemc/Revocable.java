@@ -0,0 +1,38 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * A queued task which may be revoked, such as by cancellation, after being queued.
+ * Rather than being unlinked from the queue, a revoked task is left as a tombstone,
+ * which the main thread skips without running.
+ * 
+ * @author A248
+ * 
+ */
+interface Revocable extends Runnable {
+
+	/**
+	 * Whether the task has been revoked. May be called from any thread.
+	 * 
+	 * @return true if revoked, in which case the task need not run
+	 */
+	boolean isRevoked();
+
+}
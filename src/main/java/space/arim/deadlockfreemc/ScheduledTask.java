@@ -0,0 +1,46 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * Handle to a task scheduled through {@link DeadlockFree#schedule(Runnable, long)}
+ * or {@link DeadlockFree#scheduleRepeating(Runnable, long, long)}
+ * 
+ * @author A248
+ * 
+ */
+public interface ScheduledTask {
+
+	/**
+	 * Cancels the task. A task already running is not interrupted, but a repeating task
+	 * does not run again. Safe to call from any thread.
+	 * 
+	 * @return true if cancelled by this call, false if the task was already cancelled,
+	 * or it was not repeating and has already run
+	 */
+	boolean cancel();
+	
+	/**
+	 * Whether the task has been cancelled
+	 * 
+	 * @return true if cancelled, false otherwise
+	 */
+	boolean isCancelled();
+
+}
@@ -0,0 +1,63 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * A value computed on the main thread and readable from any thread without waiting.
+ * Obtained through {@link DeadlockFree#snapshot(Object, java.util.function.Supplier, RefreshPolicy)}. <br>
+ * <br>
+ * The value is recomputed on the main thread according to its {@link RefreshPolicy}, and published
+ * through a single volatile reference. Readers therefore see a consistent value as of the last
+ * refresh, which may be up to the refresh period old. The value should be immutable, or at least
+ * safe to read concurrently.
+ * 
+ * @author A248
+ * 
+ * @param <T> the type of the value
+ */
+public interface Snapshot<T> {
+
+	/**
+	 * Gets the last published value, without waiting. <br>
+	 * If the snapshot was created off the main thread, there is no value until the next tick. <br>
+	 * <br>
+	 * If this snapshot was evicted, reading it resumes refreshing, and returns the last value computed
+	 * before eviction until the refresh. If another snapshot with the same key was created meanwhile,
+	 * this reads that snapshot instead, whose value comes from the other snapshot's supplier. Hence
+	 * the same key should always be used with the same supplier, and must be used with the same value type.
+	 * 
+	 * @return the value, or {@code null} if not yet computed
+	 */
+	T get();
+	
+	/**
+	 * Whether a value has been published yet
+	 * 
+	 * @return true if a value is present
+	 */
+	boolean isPresent();
+	
+	/**
+	 * Marks the value as outdated, so that it is recomputed soon on the main thread,
+	 * usually before the next tick. Meanwhile, readers still see the previous value.
+	 * 
+	 */
+	void invalidate();
+
+}
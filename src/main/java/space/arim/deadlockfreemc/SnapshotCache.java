@@ -0,0 +1,161 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * The snapshots of an implementation, refreshed on the main thread at the start of each tick. <br>
+ * <br>
+ * Snapshots are evicted when idle for longer than their policy allows, and, once there are
+ * more than {@link #MAXIMUM_SNAPSHOTS}, the least recently read snapshot is evicted to make room.
+ * 
+ * @author A248
+ * 
+ */
+final class SnapshotCache {
+
+	static final int MAXIMUM_SNAPSHOTS = 1024;
+	
+	private final ConcurrentMap<Object, CachedSnapshot<?>> snapshots = new ConcurrentHashMap<>();
+	private final Executor mainThreadExecutor;
+	
+	/**
+	 * Ticks refreshed so far. Main thread is the only writer
+	 * 
+	 */
+	private volatile long currentTick;
+	
+	SnapshotCache(Executor mainThreadExecutor) {
+		this.mainThreadExecutor = mainThreadExecutor;
+	}
+	
+	long currentTick() {
+		return currentTick;
+	}
+	
+	/**
+	 * Gets or creates a snapshot
+	 * 
+	 * @param <T> the type of the value
+	 * @param key the key
+	 * @param supplier the supplier, used if the snapshot is created
+	 * @param policy the refresh policy, used if the snapshot is created
+	 * @param onMainThread whether the caller is on the main thread, in which case a created snapshot is computed at once
+	 * @return the snapshot
+	 */
+	@SuppressWarnings("unchecked")
+	<T> Snapshot<T> snapshot(Object key, Supplier<T> supplier, RefreshPolicy policy, boolean onMainThread) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(supplier, "supplier");
+		Objects.requireNonNull(policy, "policy");
+		CachedSnapshot<?> existing = snapshots.get(key);
+		if (existing != null) {
+			existing.markRead();
+			return (Snapshot<T>) existing;
+		}
+		CachedSnapshot<T> created = new CachedSnapshot<>(this, key, supplier, policy);
+		if (onMainThread) {
+			created.refresh();
+		}
+		return (Snapshot<T>) activate(created);
+	}
+	
+	/**
+	 * Adds a snapshot, evicting the least recently read if there are too many
+	 * 
+	 * @param snapshot the snapshot
+	 * @return the snapshot added, or an existing snapshot with the same key
+	 */
+	CachedSnapshot<?> activate(CachedSnapshot<?> snapshot) {
+		CachedSnapshot<?> existing = snapshots.putIfAbsent(snapshot.key(), snapshot);
+		if (existing != null) {
+			return existing;
+		}
+		if (snapshots.size() > MAXIMUM_SNAPSHOTS) {
+			evictLeastRecentlyRead();
+		}
+		return snapshot;
+	}
+	
+	private void evictLeastRecentlyRead() {
+		CachedSnapshot<?> leastRecent = null;
+		for (CachedSnapshot<?> snapshot : snapshots.values()) {
+			if (leastRecent == null || snapshot.lastRead() < leastRecent.lastRead()) {
+				leastRecent = snapshot;
+			}
+		}
+		if (leastRecent != null) {
+			evict(leastRecent);
+		}
+	}
+	
+	private void evict(CachedSnapshot<?> snapshot) {
+		snapshots.remove(snapshot.key(), snapshot);
+	}
+	
+	boolean isEmpty() {
+		return snapshots.isEmpty();
+	}
+	
+	boolean isActive(CachedSnapshot<?> snapshot) {
+		return snapshots.get(snapshot.key()) == snapshot;
+	}
+	
+	/**
+	 * Arranges for an invalidated snapshot to be recomputed before the next tick. The main thread
+	 * executor must neither block nor reject, since this is called by readers. If it rejects
+	 * regardless, such as once shut down, the snapshot is still refreshed by {@link #refresh()}
+	 * 
+	 * @param snapshot the snapshot
+	 */
+	void refreshSoon(CachedSnapshot<?> snapshot) {
+		try {
+			mainThreadExecutor.execute(snapshot::refreshIfInvalidated);
+		} catch (RejectedExecutionException ignored) {
+			// Left invalidated, so refreshed at the start of the next tick if any
+		}
+	}
+	
+	/**
+	 * Refreshes snapshots which are due, and evicts idle snapshots. Must only be called
+	 * on the main thread, at the start of each tick.
+	 * 
+	 */
+	void refresh() {
+		long tick = ++currentTick;
+		for (CachedSnapshot<?> snapshot : snapshots.values()) {
+			RefreshPolicy policy = snapshot.policy();
+			if (tick - snapshot.lastRead() > policy.getMaximumIdleTicks()) {
+				evict(snapshot);
+				continue;
+			}
+			long period = policy.getPeriodTicks();
+			if ((period != 0L && tick % period == 0L) || snapshot.isInvalidated() || !snapshot.hasValue()) {
+				snapshot.refresh();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Access to {@code Thread.onSpinWait} where available (Java 9+), since Java 8 is still supported.
+ * 
+ * @author A248
+ * 
+ */
+final class SpinWait {
+
+	private static final MethodHandle ON_SPIN_WAIT;
+	
+	static {
+		MethodHandle onSpinWait;
+		try {
+			onSpinWait = MethodHandles.lookup().findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+		} catch (NoSuchMethodException | IllegalAccessException ex) {
+			onSpinWait = null;
+		}
+		ON_SPIN_WAIT = onSpinWait;
+	}
+	
+	private SpinWait() {}
+	
+	/**
+	 * Hints to the processor that the caller is busy-waiting. Does nothing on Java 8
+	 * 
+	 */
+	static void onSpinWait() {
+		if (ON_SPIN_WAIT != null) {
+			try {
+				ON_SPIN_WAIT.invokeExact();
+			} catch (Throwable ex) {
+				throw new AssertionError(ex);
+			}
+		}
+	}
+
+}
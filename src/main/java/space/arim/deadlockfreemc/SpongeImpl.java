@@ -18,27 +18,61 @@
  */
 package space.arim.deadlockfreemc;
 
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.plugin.PluginContainer;
 
 /**
- * Implementation on Sponge. Uses a 
+ * Implementation on Sponge. Uses a synchronous executor at a fixed rate of 50 milliseconds.
  * 
  * @author A248
  *
  */
 class SpongeImpl extends AbstractImplementation {
 	
-	SpongeImpl(PluginContainer plugin) {
-		Sponge.getScheduler().createSyncExecutor(plugin.getInstance().get()).scheduleAtFixedRate(this::unleash, 0L, 50L,
-				TimeUnit.MILLISECONDS);
+	/**
+	 * Null to use any plugin
+	 * 
+	 */
+	private final PluginContainer plugin;
+	
+	SpongeImpl(PluginContainer plugin, Supplier<? extends TickSource> tickSources, int queueChunkSize) {
+		super(tickSources, new AsyncPool(), queueChunkSize);
+		this.plugin = plugin;
+	}
+	
+	/**
+	 * Creates the implementation. The tick source, if not specified, is created once ticking starts.
+	 * 
+	 * @param plugin the plugin with which to schedule tasks, or null to use any plugin
+	 * @param tickSource the tick source, or null to use a synchronous executor
+	 * @param queueChunkSize the chunk size of task queues
+	 * @return the implementation
+	 */
+	static SpongeImpl create(PluginContainer plugin, TickSource tickSource, int queueChunkSize) {
+		if (tickSource != null) {
+			return new SpongeImpl(plugin, () -> tickSource, queueChunkSize);
+		}
+		return new SpongeImpl(plugin, () -> new SpongeTickSource(orAnyPlugin(plugin)), queueChunkSize);
+	}
+	
+	private static PluginContainer orAnyPlugin(PluginContainer plugin) {
+		return (plugin == null) ? Sponge.getPluginManager().getPlugins().iterator().next() : plugin;
 	}
 	
 	@Override
 	public boolean isPrimaryThread() {
 		return Sponge.getServer().isMainThread();
 	}
+	
+	@Override
+	void runOnPrimaryThread(Runnable command) {
+		if (isPrimaryThread()) {
+			command.run();
+		} else {
+			Sponge.getScheduler().createSyncExecutor(orAnyPlugin(plugin).getInstance().get()).execute(command);
+		}
+	}
 
 }
@@ -0,0 +1,53 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.plugin.PluginContainer;
+
+/**
+ * Tick source on Sponge. Uses a synchronous executor at a fixed rate of 50 milliseconds.
+ * 
+ * @author A248
+ * 
+ */
+class SpongeTickSource implements TickSource {
+
+	private final PluginContainer plugin;
+	private volatile ScheduledFuture<?> task;
+	
+	SpongeTickSource(PluginContainer plugin) {
+		this.plugin = plugin;
+	}
+	
+	@Override
+	public void start(Callback callback) {
+		task = Sponge.getScheduler().createSyncExecutor(plugin.getInstance().get()).scheduleAtFixedRate(
+				callback::onTickStart, 0L, 50L, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public void stop() {
+		task.cancel(false);
+	}
+
+}
@@ -0,0 +1,156 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A report of the main thread stalling, passed to the listener of the {@link StallWatchdog}. <br>
+ * <br>
+ * The duration is measured by sampling, so it may fall short of the true duration so far by up to
+ * a quarter of the threshold. Since the report is made while the stall is ongoing, the task or
+ * join may run for longer still.
+ * 
+ * @author A248
+ * 
+ */
+public final class StallReport {
+
+	private final Kind kind;
+	private final Class<?> subjectClass;
+	private final long durationNanos;
+	private final StackTraceElement[] submitSite;
+	private final StackTraceElement[] waitSite;
+	private final StackTraceElement[] mainThreadStack;
+	
+	StallReport(Kind kind, Class<?> subjectClass, long durationNanos,
+			StackTraceElement[] submitSite, StackTraceElement[] waitSite, StackTraceElement[] mainThreadStack) {
+		this.kind = kind;
+		this.subjectClass = subjectClass;
+		this.durationNanos = durationNanos;
+		this.submitSite = submitSite;
+		this.waitSite = waitSite;
+		this.mainThreadStack = mainThreadStack;
+	}
+	
+	/**
+	 * The kind of stall
+	 * 
+	 */
+	public enum Kind {
+	
+		/**
+		 * A single task has been running for longer than the threshold
+		 * 
+		 */
+		SLOW_TASK,
+		/**
+		 * The main thread has been awaiting a future in {@code join} or {@code get}
+		 * for longer than the threshold
+		 * 
+		 */
+		LONG_WAIT
+	
+	}
+	
+	/**
+	 * Gets the kind of stall
+	 * 
+	 * @return the kind
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * Gets the class of the slow task, or of the future awaited. For tasks submitted through
+	 * {@link DeadlockFree#execute(java.util.function.Consumer, Object)} or its two argument
+	 * variant, this is the class of the action.
+	 * 
+	 * @return the class of the task or future
+	 */
+	public Class<?> getSubjectClass() {
+		return subjectClass;
+	}
+	
+	/**
+	 * Gets how long the task has been running, or the main thread has been waiting, in nanoseconds
+	 * 
+	 * @return the duration so far
+	 */
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+	
+	/**
+	 * Gets the stack trace of where the slow task, or the future awaited, was submitted. Only known for
+	 * sampled submissions, and for futures which were themselves submitted, such as through
+	 * {@link DeadlockFree#submit(java.util.function.Supplier)}. Futures created elsewhere, such as by
+	 * {@link java.util.concurrent.CompletableFuture#supplyAsync(java.util.function.Supplier)}, a pipeline, or a database
+	 * driver, have no known submit site; for these, {@link #getWaitSite()} shows where they are awaited.
+	 * 
+	 * @return the submit site, empty if unknown
+	 */
+	public StackTraceElement[] getSubmitSite() {
+		return submitSite.clone();
+	}
+	
+	/**
+	 * Gets the stack trace of the {@code join} or {@code get} call awaiting the future, for
+	 * {@link Kind#LONG_WAIT} reports. Taken from the main thread's stack when the stall is reported,
+	 * beginning at the caller of {@code join} or {@code get}.
+	 * 
+	 * @return the wait site, empty for slow tasks or if unknown
+	 */
+	public StackTraceElement[] getWaitSite() {
+		return waitSite.clone();
+	}
+	
+	/**
+	 * Gets the stack trace of the main thread when the stall was reported
+	 * 
+	 * @return the main thread's stack trace, empty if unknown
+	 */
+	public StackTraceElement[] getMainThreadStack() {
+		return mainThreadStack.clone();
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append((kind == Kind.SLOW_TASK) ? "Main thread task " : "Main thread awaiting future ")
+				.append(subjectClass.getName()).append(" for ")
+				.append(TimeUnit.NANOSECONDS.toMillis(durationNanos)).append(" ms");
+		appendStack(builder, "Submitted at", submitSite);
+		appendStack(builder, "Awaited at", waitSite);
+		appendStack(builder, "Main thread stack", mainThreadStack);
+		return builder.toString();
+	}
+	
+	private static void appendStack(StringBuilder builder, String heading, StackTraceElement[] stack) {
+		if (stack.length == 0) {
+			return;
+		}
+		builder.append('\n').append(heading).append(':');
+		for (StackTraceElement element : stack) {
+			builder.append("\n\tat ").append(element);
+		}
+	}
+
+}
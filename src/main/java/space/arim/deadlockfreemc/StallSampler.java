@@ -0,0 +1,278 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * Watches the main thread of an {@link AbstractImplementation} according to {@link StallWatchdog} settings. <br>
+ * <br>
+ * The main thread publishes the task it runs and the future it awaits, each with a sequence number,
+ * using ordered writes. The watchdog thread samples them several times per threshold; a stall is
+ * a task or wait whose sequence number has not changed for longer than the threshold. Thus the main
+ * thread never reads the clock on behalf of the watchdog.
+ * 
+ * @author A248
+ * 
+ */
+final class StallSampler {
+
+	private static final StackTraceElement[] NO_STACK = new StackTraceElement[0];
+	
+	private final StallWatchdog settings;
+	private final Supplier<Thread> mainThread;
+	private final ScheduledFuture<?> sampling;
+	
+	/**
+	 * Sampled submit sites, keyed weakly by task identity
+	 * 
+	 */
+	private final Map<Object, Throwable> submitSites = Collections.synchronizedMap(new WeakHashMap<>());
+	
+	/*
+	 * Written by the main thread, read by the watchdog thread
+	 */
+	/**
+	 * The running task, or the action of a running {@link ArgumentTask}, since the task
+	 * itself is recycled as soon as it runs
+	 * 
+	 */
+	private volatile Object currentTask;
+	private volatile long taskSequence;
+	private volatile Future<?> awaitedFuture;
+	private volatile long waitSequence;
+	
+	private static final AtomicReferenceFieldUpdater<StallSampler, Object> TASK_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(StallSampler.class, Object.class, "currentTask");
+	private static final AtomicLongFieldUpdater<StallSampler> TASK_SEQUENCE_UPDATER =
+			AtomicLongFieldUpdater.newUpdater(StallSampler.class, "taskSequence");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<StallSampler, Future> FUTURE_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(StallSampler.class, Future.class, "awaitedFuture");
+	private static final AtomicLongFieldUpdater<StallSampler> WAIT_SEQUENCE_UPDATER =
+			AtomicLongFieldUpdater.newUpdater(StallSampler.class, "waitSequence");
+	
+	/**
+	 * Futures awaited by enclosing joins, accessed only by the main thread
+	 * 
+	 */
+	private final Deque<Object> enclosingWaits = new ArrayDeque<>();
+	private static final Object NO_FUTURE = new Object();
+	
+	/*
+	 * Accessed only by the watchdog thread
+	 */
+	private final Observation taskObservation = new Observation();
+	private final Observation waitObservation = new Observation();
+	
+	StallSampler(StallWatchdog settings, Supplier<Thread> mainThread) {
+		this.settings = settings;
+		this.mainThread = mainThread;
+		long interval = Math.max(TimeUnit.MILLISECONDS.toNanos(1L), settings.getThresholdNanos() / 4L);
+		sampling = WatchdogHolder.WATCHDOG.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.NANOSECONDS);
+	}
+	
+	void stop() {
+		sampling.cancel(false);
+	}
+	
+	/**
+	 * Records the stack trace of a sample of submissions. May be called from any thread.
+	 * 
+	 * @param task the task submitted
+	 */
+	void sampleSubmitSite(Runnable task) {
+		int oneIn = settings.getSubmitSiteSampling();
+		if (oneIn == 0 || ThreadLocalRandom.current().nextInt(oneIn) != 0) {
+			return;
+		}
+		if (task instanceof ArgumentTask) {
+			// Recycled, so its identity does not identify the submission
+			return;
+		}
+		submitSites.put(task, new Throwable());
+	}
+	
+	/**
+	 * Called on the main thread before running a task
+	 * 
+	 * @param task the task
+	 * @return the task previously running, if tasks are nested, to be passed to {@link #endTask(Object)}
+	 */
+	Object beginTask(Runnable task) {
+		Object previous = currentTask;
+		TASK_SEQUENCE_UPDATER.lazySet(this, taskSequence + 1);
+		TASK_UPDATER.lazySet(this, (task instanceof ArgumentTask) ? ((ArgumentTask) task).action() : task);
+		return previous;
+	}
+	
+	void endTask(Object previous) {
+		if (previous != null) {
+			// The outer task's timing restarts, which underestimates it
+			TASK_SEQUENCE_UPDATER.lazySet(this, taskSequence + 1);
+		}
+		TASK_UPDATER.lazySet(this, previous);
+	}
+	
+	/**
+	 * Called on the main thread when it begins awaiting a future. Must be followed by {@link #endWait()}.
+	 * 
+	 * @param future the future
+	 */
+	void beginWait(Future<?> future) {
+		Future<?> previous = awaitedFuture;
+		enclosingWaits.push((previous == null) ? NO_FUTURE : previous);
+		WAIT_SEQUENCE_UPDATER.lazySet(this, waitSequence + 1);
+		FUTURE_UPDATER.lazySet(this, future);
+	}
+	
+	void endWait() {
+		// Empty if the watchdog was set during a join
+		Object previous = enclosingWaits.poll();
+		if (previous != null && previous != NO_FUTURE) {
+			// The outer wait's timing restarts, which underestimates it
+			WAIT_SEQUENCE_UPDATER.lazySet(this, waitSequence + 1);
+			FUTURE_UPDATER.lazySet(this, (Future<?>) previous);
+		} else {
+			FUTURE_UPDATER.lazySet(this, null);
+		}
+	}
+	
+	private void sample() {
+		long now = System.nanoTime();
+		Object task = currentTask;
+		if (taskObservation.isStalled(task, taskSequence, now, settings.getThresholdNanos())) {
+			report(StallReport.Kind.SLOW_TASK, task, now - taskObservation.since);
+		}
+		Future<?> future = awaitedFuture;
+		if (waitObservation.isStalled(future, waitSequence, now, settings.getThresholdNanos())) {
+			report(StallReport.Kind.LONG_WAIT, future, now - waitObservation.since);
+		}
+	}
+	
+	private void report(StallReport.Kind kind, Object subject, long durationNanos) {
+		Throwable submitSite = submitSites.get(subject);
+		Thread mainThread = this.mainThread.get();
+		StackTraceElement[] mainThreadStack = (mainThread == null) ? NO_STACK : mainThread.getStackTrace();
+		StackTraceElement[] waitSite = (kind == StallReport.Kind.LONG_WAIT) ? waitSite(mainThreadStack) : NO_STACK;
+		StallReport report = new StallReport(kind, subject.getClass(),
+				durationNanos, (submitSite == null) ? NO_STACK : submitSite.getStackTrace(),
+				waitSite, mainThreadStack);
+		try {
+			settings.getListener().accept(report);
+		} catch (RuntimeException ex) {
+			// Keep sampling
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+		}
+	}
+	
+	/**
+	 * Finds the call to {@code join} or {@code get} in the main thread's stack. Since the wait is
+	 * ongoing, the innermost such call is the one awaiting the future, even if the main thread is
+	 * running other tasks in the meantime. Capturing the stack at every join would be too costly.
+	 * 
+	 * @param mainThreadStack the main thread's stack trace
+	 * @return the stack trace from the caller of {@code join} or {@code get}, empty if not found
+	 */
+	private static StackTraceElement[] waitSite(StackTraceElement[] mainThreadStack) {
+		int index = 0;
+		while (index < mainThreadStack.length && !isJoinFrame(mainThreadStack[index])) {
+			index++;
+		}
+		if (index == mainThreadStack.length) {
+			return NO_STACK;
+		}
+		// Skip delegating implementations, such as per-owner views
+		while (index < mainThreadStack.length && isJoinFrame(mainThreadStack[index])) {
+			index++;
+		}
+		return Arrays.copyOfRange(mainThreadStack, index, mainThreadStack.length);
+	}
+	
+	private static boolean isJoinFrame(StackTraceElement frame) {
+		String method = frame.getMethodName();
+		return (method.equals("join") || method.equals("get"))
+				&& frame.getClassName().startsWith(StallSampler.class.getPackage().getName() + '.');
+	}
+	
+	/**
+	 * What the watchdog thread last saw of a task or wait
+	 * 
+	 */
+	private static final class Observation {
+	
+		private long sequence = -1L;
+		long since;
+		private boolean reported;
+		
+		/**
+		 * Updates the observation with a sample
+		 * 
+		 * @param subject the task or future, null if none
+		 * @param sequence the sequence number
+		 * @param now the current nano time
+		 * @param thresholdNanos the threshold
+		 * @return true if the subject has newly exceeded the threshold
+		 */
+		boolean isStalled(Object subject, long sequence, long now, long thresholdNanos) {
+			if (subject == null || sequence != this.sequence) {
+				this.sequence = (subject == null) ? -1L : sequence;
+				since = now;
+				reported = false;
+				return false;
+			}
+			if (reported || now - since < thresholdNanos) {
+				return false;
+			}
+			reported = true;
+			return true;
+		}
+	
+	}
+	
+	/**
+	 * Lazily creates the watchdog thread, shared by all implementations
+	 * 
+	 */
+	private static final class WatchdogHolder {
+	
+		static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+			Thread thread = new Thread(runnable, "DeadlockFreeMC-Stall-Watchdog");
+			thread.setDaemon(true);
+			return thread;
+		});
+	
+	}
+
+}
@@ -0,0 +1,164 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Settings of the stall watchdog, which reports main thread tasks running for too long
+ * and joins waiting for too long. Set through {@link DeadlockFree#setStallWatchdog(StallWatchdog)}. <br>
+ * <br>
+ * The watchdog samples the main thread's state from a separate thread, several times per threshold.
+ * The main thread only records which task it runs and which future it awaits, at the cost of a few
+ * ordered writes per task. Each stall is reported once, on the watchdog thread, as soon as it exceeds
+ * the threshold. <br>
+ * <br>
+ * To help find where slow tasks come from, a sample of submissions may also record their stack trace.
+ * Capturing a stack trace is expensive, so only 1 in so many submissions are sampled. <br>
+ * <br>
+ * Instances are immutable.
+ * 
+ * @author A248
+ * 
+ */
+public final class StallWatchdog {
+
+	private static final StallWatchdog DISABLED = new StallWatchdog(0L, (report) -> {}, 0);
+	private static final int DEFAULT_SUBMIT_SITE_SAMPLING = 1000;
+	
+	private final long thresholdNanos;
+	private final Consumer<? super StallReport> listener;
+	private final int submitSiteSampling;
+	
+	private StallWatchdog(long thresholdNanos, Consumer<? super StallReport> listener, int submitSiteSampling) {
+		this.thresholdNanos = thresholdNanos;
+		this.listener = listener;
+		this.submitSiteSampling = submitSiteSampling;
+	}
+	
+	/**
+	 * Gets settings which disable the watchdog. This is the default.
+	 * 
+	 * @return the disabled watchdog
+	 */
+	public static StallWatchdog disabled() {
+		return DISABLED;
+	}
+	
+	/**
+	 * Creates settings which report tasks and joins taking longer than the threshold. <br>
+	 * Reports are logged as warnings, and 1 in 1000 submissions record their stack trace.
+	 * 
+	 * @param threshold the threshold
+	 * @param unit the unit of the threshold
+	 * @return the watchdog settings
+	 * @throws IllegalArgumentException if the threshold is less than 1 millisecond
+	 */
+	public static StallWatchdog of(long threshold, TimeUnit unit) {
+		long thresholdNanos = unit.toNanos(threshold);
+		if (thresholdNanos < TimeUnit.MILLISECONDS.toNanos(1L)) {
+			throw new IllegalArgumentException("Threshold must be at least 1 millisecond");
+		}
+		Logger logger = Logger.getLogger(StallWatchdog.class.getName());
+		return new StallWatchdog(thresholdNanos, (report) -> logger.log(Level.WARNING, report.toString()),
+				DEFAULT_SUBMIT_SITE_SAMPLING);
+	}
+	
+	/**
+	 * Creates settings identical to these, except passing reports to the specified listener
+	 * rather than logging them. The listener is called on the watchdog thread.
+	 * 
+	 * @param listener the listener of reports
+	 * @return the watchdog settings
+	 * @throws IllegalStateException if these settings are disabled
+	 */
+	public StallWatchdog withListener(Consumer<? super StallReport> listener) {
+		checkEnabled();
+		return new StallWatchdog(thresholdNanos, Objects.requireNonNull(listener, "listener"), submitSiteSampling);
+	}
+	
+	/**
+	 * Creates settings identical to these, except sampling the stack trace of 1 in the specified amount
+	 * of submissions. 0 disables sampling.
+	 * 
+	 * @param oneIn the amount of submissions per sampled submission, or 0 for none
+	 * @return the watchdog settings
+	 * @throws IllegalArgumentException if the amount is negative
+	 * @throws IllegalStateException if these settings are disabled
+	 */
+	public StallWatchdog withSubmitSiteSampling(int oneIn) {
+		checkEnabled();
+		if (oneIn < 0) {
+			throw new IllegalArgumentException("Sampling must not be negative");
+		}
+		return new StallWatchdog(thresholdNanos, listener, oneIn);
+	}
+	
+	private void checkEnabled() {
+		if (isDisabled()) {
+			throw new IllegalStateException("Watchdog is disabled");
+		}
+	}
+	
+	/**
+	 * Whether these settings disable the watchdog
+	 * 
+	 * @return true if disabled, false otherwise
+	 */
+	public boolean isDisabled() {
+		return this == DISABLED;
+	}
+	
+	/**
+	 * Gets the threshold beyond which tasks and joins are reported, in nanoseconds. 0 if disabled
+	 * 
+	 * @return the threshold in nanoseconds
+	 */
+	public long getThresholdNanos() {
+		return thresholdNanos;
+	}
+	
+	/**
+	 * Gets the listener of reports
+	 * 
+	 * @return the listener
+	 */
+	public Consumer<? super StallReport> getListener() {
+		return listener;
+	}
+	
+	/**
+	 * Gets the amount of submissions per submission whose stack trace is sampled, 0 if none are
+	 * 
+	 * @return the submit site sampling
+	 */
+	public int getSubmitSiteSampling() {
+		return submitSiteSampling;
+	}
+	
+	@Override
+	public String toString() {
+		return "StallWatchdog [thresholdNanos=" + thresholdNanos + ", submitSiteSampling=" + submitSiteSampling + "]";
+	}
+
+}
@@ -0,0 +1,120 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A task submitted through {@link DeadlockFree#submit(Supplier)}, which is also its own future. <br>
+ * <br>
+ * Once the future is done, whether by cancellation or otherwise, the queued task is a tombstone.
+ * The supplier is released at once, so that a cancelled task retains nothing it references. <br>
+ * <br>
+ * Joining the future on the main thread promotes the task, see {@link PromotableTask}.
+ * 
+ * @author A248
+ * 
+ * @param <T> the result type
+ */
+final class SubmittedTask<T> extends CompletableFuture<T> implements PromotableTask, PromotableFuture, Discardable {
+
+	private volatile Supplier<T> supplier;
+	private long queuedStamp;
+	/**
+	 * Written after {@link #queuedStamp}, which it publishes
+	 * 
+	 */
+	private volatile OwnerQueue owner;
+	
+	SubmittedTask(Supplier<T> supplier) {
+		this.supplier = supplier;
+	}
+	
+	@Override
+	public void run() {
+		Supplier<T> supplier = this.supplier;
+		if (supplier == null || isDone()) {
+			return;
+		}
+		this.supplier = null;
+		try {
+			complete(supplier.get());
+		} catch (Throwable ex) {
+			completeExceptionally(ex);
+		}
+	}
+	
+	@Override
+	public boolean isRevoked() {
+		return isDone();
+	}
+	
+	@Override
+	public void queued(OwnerQueue owner, long stamp) {
+		queuedStamp = stamp;
+		this.owner = owner;
+	}
+	
+	@Override
+	public OwnerQueue owner() {
+		return owner;
+	}
+	
+	@Override
+	public long queuedStamp() {
+		return queuedStamp;
+	}
+	
+	@Override
+	public void forEachPromotable(Consumer<? super PromotableTask> action) {
+		if (!isDone()) {
+			action.accept(this);
+		}
+	}
+	
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		boolean cancelled = super.cancel(mayInterruptIfRunning);
+		supplier = null;
+		return cancelled;
+	}
+	
+	@Override
+	public boolean complete(T value) {
+		boolean completed = super.complete(value);
+		supplier = null;
+		return completed;
+	}
+	
+	@Override
+	public boolean completeExceptionally(Throwable ex) {
+		boolean completed = super.completeExceptionally(ex);
+		supplier = null;
+		return completed;
+	}
+	
+	@Override
+	public void discard() {
+		completeExceptionally(new RejectedExecutionException("Dropped from the full main thread queue"));
+	}
+
+}
@@ -0,0 +1,176 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.function.Predicate;
+
+/**
+ * The main thread queue, split into one lane per {@link Priority}. <br>
+ * <br>
+ * The consumer takes from the highest non-empty lane. Each time a lane is passed over
+ * in favour of a higher one, its aging count increases. Once it reaches {@link #AGING_LIMIT},
+ * the lane's next task is taken ahead of higher lanes, so low priority tasks are delayed
+ * but never starved. <br>
+ * <br>
+ * Thread safety is as for {@link MpscChunkedQueue}.
+ * 
+ * @author A248
+ * 
+ */
+final class TaskLanes {
+
+	/**
+	 * How many times a lane may be passed over before it is given a turn
+	 * 
+	 */
+	static final int AGING_LIMIT = 16;
+	
+	private static final Priority[] PRIORITIES = Priority.values();
+	
+	private final MpscChunkedQueue<Runnable>[] lanes;
+	
+	/*
+	 * Consumer-owned state
+	 */
+	private final int[] passedOver;
+	private long polledStamp;
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	TaskLanes(int chunkSize) {
+		lanes = new MpscChunkedQueue[PRIORITIES.length];
+		for (int n = 0; n < lanes.length; n++) {
+			lanes[n] = new MpscChunkedQueue<>(chunkSize);
+		}
+		passedOver = new int[lanes.length];
+	}
+	
+	/**
+	 * Adds a task. May be called from any thread.
+	 * 
+	 * @param task the task
+	 * @param stamp the timestamp, later available through {@link #polledStamp()}
+	 * @param priority the priority of the task
+	 */
+	void offer(Runnable task, long stamp, Priority priority) {
+		lanes[priority.ordinal()].offer(task, stamp);
+	}
+	
+	/**
+	 * Removes the next task to run. Must only be called by the consumer thread.
+	 * 
+	 * @return the task, or null if there is none
+	 */
+	Runnable poll() {
+		// Lanes which have aged enough go first, lowest priority first
+		for (int n = lanes.length - 1; n > 0; n--) {
+			if (passedOver[n] >= AGING_LIMIT) {
+				passedOver[n] = 0;
+				Runnable task = poll(n);
+				if (task != null) {
+					return task;
+				}
+			}
+		}
+		for (int n = 0; n < lanes.length; n++) {
+			Runnable task = poll(n);
+			if (task != null) {
+				// Lower lanes were passed over. An empty lane resets its count when next given a turn
+				for (int lower = n + 1; lower < lanes.length; lower++) {
+					passedOver[lower]++;
+				}
+				return task;
+			}
+		}
+		return null;
+	}
+	
+	private Runnable poll(int lane) {
+		MpscChunkedQueue<Runnable> queue = lanes[lane];
+		Runnable task = queue.poll();
+		if (task != null) {
+			polledStamp = queue.polledStamp();
+		}
+		return task;
+	}
+	
+	/**
+	 * Gets the timestamp of the task last returned by {@link #poll()}.
+	 * Must only be called by the consumer thread.
+	 * 
+	 * @return the timestamp given when the task was offered
+	 */
+	long polledStamp() {
+		return polledStamp;
+	}
+	
+	/**
+	 * Whether there is no task ready to be polled. Must only be called by the consumer thread.
+	 * 
+	 * @return true if {@link #poll()} would currently return null
+	 */
+	boolean isEmpty() {
+		for (MpscChunkedQueue<Runnable> lane : lanes) {
+			if (!lane.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Estimates the amount of tasks in all lanes. May be called from any thread.
+	 * 
+	 * @return the approximate size
+	 */
+	long size() {
+		long size = 0L;
+		for (MpscChunkedQueue<Runnable> lane : lanes) {
+			size += lane.size();
+		}
+		return size;
+	}
+	
+	/**
+	 * See {@link MpscChunkedQueue#enableRemoval()}
+	 * 
+	 */
+	void enableRemoval() {
+		for (MpscChunkedQueue<Runnable> lane : lanes) {
+			lane.enableRemoval();
+		}
+	}
+	
+	/**
+	 * Takes the oldest task of the lowest priority accepted by the filter.
+	 * See {@link MpscChunkedQueue#removeOldest(Predicate)}
+	 * 
+	 * @param filter which tasks may be removed
+	 * @return the removed task, or null if none was found
+	 */
+	Runnable removeOldest(Predicate<? super Runnable> filter) {
+		for (int n = lanes.length - 1; n >= 0; n--) {
+			Runnable task = lanes[n].removeOldest(filter);
+			if (task != null) {
+				return task;
+			}
+		}
+		return null;
+	}
+
+}
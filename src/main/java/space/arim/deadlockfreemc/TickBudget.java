@@ -0,0 +1,155 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how long queued tasks may run on the main thread each tick. <br>
+ * <br>
+ * Once the budget for a tick is used up, remaining tasks carry over to the next tick.
+ * A minimum amount of tasks per tick may also be specified, so that queued work
+ * always makes progress, even if individual tasks are slow. <br>
+ * <br>
+ * Separately, the budget determines the time slice given each tick to bulk operations such as
+ * {@link DeadlockFree#forEachOnMain(Iterable, java.util.function.Consumer)}. <br>
+ * <br>
+ * Instances are immutable.
+ * 
+ * @author A248
+ *
+ */
+public final class TickBudget {
+
+	private static final long DEFAULT_BULK_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(5L);
+	private static final TickBudget UNLIMITED = new TickBudget(Long.MAX_VALUE, 0, DEFAULT_BULK_SLICE_NANOS);
+	
+	private final long nanosPerTick;
+	private final int minimumTasks;
+	private final long bulkSliceNanos;
+	
+	private TickBudget(long nanosPerTick, int minimumTasks, long bulkSliceNanos) {
+		this.nanosPerTick = nanosPerTick;
+		this.minimumTasks = minimumTasks;
+		this.bulkSliceNanos = bulkSliceNanos;
+	}
+	
+	/**
+	 * Gets a budget which never defers tasks. All queued tasks run each tick.
+	 * This is the default.
+	 * 
+	 * @return the unlimited budget
+	 */
+	public static TickBudget unlimited() {
+		return UNLIMITED;
+	}
+	
+	/**
+	 * Creates a budget allowing the specified amount of time per tick
+	 * 
+	 * @param time the time per tick
+	 * @param unit the unit of the time
+	 * @return the budget
+	 * @throws IllegalArgumentException if the time is not positive
+	 */
+	public static TickBudget of(long time, TimeUnit unit) {
+		long nanos = unit.toNanos(time);
+		if (nanos <= 0L) {
+			throw new IllegalArgumentException("Time per tick must be positive");
+		}
+		return new TickBudget(nanos, 0, DEFAULT_BULK_SLICE_NANOS);
+	}
+	
+	/**
+	 * Creates a budget identical to this one, except running at least
+	 * the specified amount of tasks each tick regardless of time used.
+	 * 
+	 * @param minimumTasks the minimum tasks to run per tick
+	 * @return the budget
+	 * @throws IllegalArgumentException if the amount is negative
+	 */
+	public TickBudget withMinimumTasks(int minimumTasks) {
+		if (minimumTasks < 0) {
+			throw new IllegalArgumentException("Minimum tasks must not be negative");
+		}
+		return new TickBudget(nanosPerTick, minimumTasks, bulkSliceNanos);
+	}
+	
+	/**
+	 * Creates a budget identical to this one, except with the specified time slice
+	 * for bulk operations each tick. The default is 5 milliseconds. <br>
+	 * If the tick budget is limited, bulk operations also stop once it is used up,
+	 * though each always processes at least one element per tick.
+	 * 
+	 * @param time the time slice per tick
+	 * @param unit the unit of the time
+	 * @return the budget
+	 * @throws IllegalArgumentException if the time is not positive
+	 */
+	public TickBudget withBulkSlice(long time, TimeUnit unit) {
+		long nanos = unit.toNanos(time);
+		if (nanos <= 0L) {
+			throw new IllegalArgumentException("Bulk slice must be positive");
+		}
+		return new TickBudget(nanosPerTick, minimumTasks, nanos);
+	}
+	
+	/**
+	 * Whether this budget is unlimited
+	 * 
+	 * @return true if unlimited, false otherwise
+	 */
+	public boolean isUnlimited() {
+		return nanosPerTick == Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Gets the time allowed per tick in nanoseconds. {@code Long.MAX_VALUE} if unlimited
+	 * 
+	 * @return the nanoseconds per tick
+	 */
+	public long getNanosPerTick() {
+		return nanosPerTick;
+	}
+	
+	/**
+	 * Gets the minimum amount of tasks to run per tick
+	 * 
+	 * @return the minimum tasks per tick
+	 */
+	public int getMinimumTasks() {
+		return minimumTasks;
+	}
+	
+	/**
+	 * Gets the time slice per tick for bulk operations, in nanoseconds
+	 * 
+	 * @return the bulk slice nanoseconds
+	 */
+	public long getBulkSliceNanos() {
+		return bulkSliceNanos;
+	}
+	
+	@Override
+	public String toString() {
+		return "TickBudget [nanosPerTick=" + nanosPerTick + ", minimumTasks=" + minimumTasks
+				+ ", bulkSliceNanos=" + bulkSliceNanos + "]";
+	}
+	
+}
@@ -0,0 +1,69 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * Determines when queued tasks are run on the main thread. <br>
+ * <br>
+ * A tick source notifies its callback, on the main thread, at the start of each server tick.
+ * Where the platform allows, it also notifies at the end of each tick with the time remaining
+ * until the next tick, letting queued tasks run while the server would otherwise sleep.
+ * 
+ * @author A248
+ * 
+ */
+public interface TickSource {
+
+	/**
+	 * Begins notifying the specified callback of ticks. Called once.
+	 * 
+	 * @param callback the callback to notify on the main thread
+	 */
+	void start(Callback callback);
+	
+	/**
+	 * Stops notifying the callback. Called at most once, after {@link #start(Callback)}
+	 * 
+	 */
+	void stop();
+	
+	/**
+	 * Receives tick notifications from a {@link TickSource}. All methods are called on the main thread.
+	 * 
+	 * @author A248
+	 * 
+	 */
+	interface Callback {
+	
+		/**
+		 * Called at the start of each tick
+		 * 
+		 */
+		void onTickStart();
+		
+		/**
+		 * Called at the end of each tick, if supported by the tick source
+		 * 
+		 * @param nanosUntilNextTick the time, in nanoseconds, before the next tick should start
+		 */
+		void onTickEnd(long nanosUntilNextTick);
+	
+	}
+
+}
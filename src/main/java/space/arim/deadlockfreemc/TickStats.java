@@ -0,0 +1,74 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+/**
+ * Statistics about the queued tasks run during a single tick. Instances are immutable.
+ * 
+ * @author A248
+ *
+ */
+public final class TickStats {
+
+	static final TickStats NONE = new TickStats(0, 0L, 0L);
+	
+	private final int tasksRun;
+	private final long tasksDeferred;
+	private final long nanosUsed;
+	
+	TickStats(int tasksRun, long tasksDeferred, long nanosUsed) {
+		this.tasksRun = tasksRun;
+		this.tasksDeferred = tasksDeferred;
+		this.nanosUsed = nanosUsed;
+	}
+	
+	/**
+	 * Gets the amount of tasks run during the tick
+	 * 
+	 * @return the tasks run
+	 */
+	public int getTasksRun() {
+		return tasksRun;
+	}
+	
+	/**
+	 * Gets the approximate amount of tasks left queued for a later tick
+	 * because the tick budget was used up
+	 * 
+	 * @return the tasks deferred
+	 */
+	public long getTasksDeferred() {
+		return tasksDeferred;
+	}
+	
+	/**
+	 * Gets the time, in nanoseconds, spent running tasks during the tick
+	 * 
+	 * @return the nanoseconds used
+	 */
+	public long getNanosUsed() {
+		return nanosUsed;
+	}
+	
+	@Override
+	public String toString() {
+		return "TickStats [tasksRun=" + tasksRun + ", tasksDeferred=" + tasksDeferred + ", nanosUsed=" + nanosUsed + "]";
+	}
+	
+}
@@ -0,0 +1,170 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed hierarchical timing wheel, counting in ticks. Owned by the main thread. <br>
+ * <br>
+ * There are {@link #LEVELS} wheels of {@link #SLOTS} slots each. A timer due in {@code delta} ticks
+ * is placed in the wheel at level {@code floor(log64(delta))}, in the slot given by the bits of its
+ * deadline for that level. Each tick, the wheel advances one slot. Whenever a lower wheel wraps
+ * around, the next slot of the wheel above is emptied and its timers placed again, now in lower
+ * wheels. So scheduling and advancing are O(1), regardless of how many timers are scheduled. <br>
+ * <br>
+ * Other threads submit timers to an inbox, which is emptied each tick. Cancelled timers are simply
+ * skipped once their slot is reached.
+ * 
+ * @author A248
+ * 
+ */
+final class TimingWheel {
+
+	private static final int SLOT_BITS = 6;
+	static final int SLOTS = 1 << SLOT_BITS;
+	static final int LEVELS = 6;
+	/**
+	 * The maximum delay in ticks, just over 100 years of ticks at 20 ticks per second
+	 * 
+	 */
+	static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+	
+	private final WheelTimer[][] wheels = new WheelTimer[LEVELS][SLOTS];
+	private final MpscChunkedQueue<WheelTimer> inbox = new MpscChunkedQueue<>();
+	private final Consumer<WheelTimer> dueTimers;
+	
+	/*
+	 * Main thread only
+	 */
+	private long currentTick;
+	private int placed;
+	
+	/**
+	 * Creates the wheel
+	 * 
+	 * @param dueTimers receives timers as they become due, on the main thread
+	 */
+	TimingWheel(Consumer<WheelTimer> dueTimers) {
+		this.dueTimers = dueTimers;
+	}
+	
+	long currentTick() {
+		return currentTick;
+	}
+	
+	/**
+	 * Schedules a timer, taking effect at the next tick as if scheduled just before it.
+	 * May be called from any thread.
+	 * 
+	 * @param timer the timer
+	 */
+	void submit(WheelTimer timer) {
+		inbox.offer(timer);
+	}
+	
+	/**
+	 * Schedules a timer immediately. Must only be called on the main thread.
+	 * 
+	 * @param timer the timer
+	 */
+	void schedule(WheelTimer timer) {
+		timer.deadline = currentTick + Math.max(1L, timer.delay);
+		place(timer);
+	}
+	
+	/**
+	 * Schedules a repeating timer whose deadline has already been set. If the deadline
+	 * has passed, as when the timer fell behind, it is instead due at the next tick.
+	 * Must only be called on the main thread.
+	 * 
+	 * @param timer the timer
+	 */
+	void reschedule(WheelTimer timer) {
+		if (timer.deadline - currentTick <= 0L) {
+			timer.deadline = currentTick + 1L;
+		}
+		place(timer);
+	}
+	
+	private void place(WheelTimer timer) {
+		long delta = timer.deadline - currentTick;
+		if (delta <= 0L) {
+			dueTimers.accept(timer);
+			return;
+		}
+		int level = (63 - Long.numberOfLeadingZeros(delta)) / SLOT_BITS;
+		int slot = (int) (timer.deadline >>> (level * SLOT_BITS)) & (SLOTS - 1);
+		WheelTimer[] wheel = wheels[level];
+		timer.next = wheel[slot];
+		wheel[slot] = timer;
+		placed++;
+	}
+	
+	/**
+	 * Whether no timers are scheduled. Cancelled timers count until their slot is reached.
+	 * Must only be called on the main thread.
+	 * 
+	 * @return true if empty
+	 */
+	boolean isEmpty() {
+		return placed == 0 && inbox.size() == 0L;
+	}
+	
+	/**
+	 * Advances one tick, passing due timers on. Must only be called on the main thread, once per tick.
+	 * 
+	 */
+	void advance() {
+		WheelTimer submitted;
+		while ((submitted = inbox.poll()) != null) {
+			schedule(submitted);
+		}
+		long tick = ++currentTick;
+		// Higher wheels first, so their timers can land in lower wheels yet to be emptied
+		for (int level = LEVELS - 1; level > 0; level--) {
+			int shift = level * SLOT_BITS;
+			if ((tick & ((1L << shift) - 1)) == 0L) {
+				replace(level, (int) (tick >>> shift) & (SLOTS - 1));
+			}
+		}
+		replace(0, (int) tick & (SLOTS - 1));
+	}
+	
+	/**
+	 * Empties a slot, placing each of its timers again. Timers now due are passed on.
+	 * 
+	 * @param level the wheel level
+	 * @param slot the slot index
+	 */
+	private void replace(int level, int slot) {
+		WheelTimer timer = wheels[level][slot];
+		wheels[level][slot] = null;
+		while (timer != null) {
+			WheelTimer next = timer.next;
+			timer.next = null;
+			placed--;
+			if (!timer.isCancelled()) {
+				place(timer);
+			}
+			timer = next;
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Access to virtual threads. <br>
+ * <br>
+ * This is the Java 8 version, for runtimes without virtual threads. The multi-release jar
+ * replaces it on Java 21 and later with the version in {@code src/main/java21}, which must
+ * keep the same package-private signatures.
+ * 
+ * @author A248
+ * 
+ */
+final class VirtualThreads {
+
+	private VirtualThreads() {}
+	
+	/**
+	 * Whether virtual threads are available on this runtime
+	 * 
+	 * @return false, on this version
+	 */
+	static boolean isAvailable() {
+		return false;
+	}
+	
+	/**
+	 * Gets the shared executor which starts a virtual thread per task
+	 * 
+	 * @return the executor
+	 * @throws UnsupportedOperationException always, on this version
+	 */
+	static Executor executor() {
+		throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+	}
+
+}
@@ -0,0 +1,71 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tracks whether the main thread is parked awaiting work, so that producers
+ * unpark it only when needed. <br>
+ * <br>
+ * The main thread calls {@link #prepareWait()}, then checks once more for queued tasks or a completed
+ * future, and only then parks. Producers make their work visible before calling {@link #signal(Thread)}.
+ * Because both sides use volatile accesses, either the main thread sees the work, or the producer
+ * sees the main thread waiting. Of several concurrent producers, only one unparks the main thread.
+ * 
+ * @author A248
+ * 
+ */
+final class WaitState {
+
+	private static final int IDLE = 0;
+	private static final int WAITING = 1;
+	private static final int NOTIFIED = 2;
+	
+	private final AtomicInteger state = new AtomicInteger(IDLE);
+	
+	/**
+	 * Wakes the main thread if it is waiting. May be called from any thread.
+	 * 
+	 * @param mainThread the main thread
+	 */
+	void signal(Thread mainThread) {
+		if (state.get() == WAITING && state.compareAndSet(WAITING, NOTIFIED)) {
+			LockSupport.unpark(mainThread);
+		}
+	}
+	
+	/**
+	 * Marks the main thread as about to wait. Must be followed by a final check for work, then parking
+	 * 
+	 */
+	void prepareWait() {
+		state.set(WAITING);
+	}
+	
+	/**
+	 * Marks the main thread as no longer waiting
+	 * 
+	 */
+	void endWait() {
+		state.lazySet(IDLE);
+	}
+
+}
@@ -0,0 +1,136 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A task scheduled in a {@link TimingWheel}. Timers link directly to one another
+ * within a wheel slot, so a scheduled timer costs no allocation besides itself. <br>
+ * <br>
+ * Once due, the timer is queued and runs as an ordinary task of its owner.
+ * A repeating timer then reschedules itself.
+ * 
+ * @author A248
+ * 
+ */
+final class WheelTimer implements ScheduledTask, Revocable, Discardable {
+
+	private static final int SCHEDULED = 0;
+	private static final int CANCELLED = 1;
+	private static final int DONE = 2;
+	
+	private final TimingWheel wheel;
+	private final OwnerQueue owner;
+	private final Runnable command;
+	private final long period;
+	
+	private volatile int state;
+	
+	/**
+	 * Delay in ticks to apply when the wheel next takes the timer from its inbox.
+	 * Written before the timer is submitted to the inbox
+	 */
+	long delay;
+	
+	/*
+	 * Main thread only
+	 */
+	long deadline;
+	WheelTimer next;
+	
+	private static final AtomicIntegerFieldUpdater<WheelTimer> STATE_UPDATER =
+			AtomicIntegerFieldUpdater.newUpdater(WheelTimer.class, "state");
+	
+	/**
+	 * Creates the timer
+	 * 
+	 * @param wheel the wheel
+	 * @param owner the owner of the task
+	 * @param command the command
+	 * @param delay the initial delay in ticks
+	 * @param period the period in ticks, or 0 if not repeating
+	 */
+	WheelTimer(TimingWheel wheel, OwnerQueue owner, Runnable command, long delay, long period) {
+		this.wheel = wheel;
+		this.owner = owner;
+		this.command = command;
+		this.delay = delay;
+		this.period = period;
+	}
+	
+	OwnerQueue owner() {
+		return owner;
+	}
+	
+	@Override
+	public void run() {
+		if (period == 0L) {
+			if (STATE_UPDATER.compareAndSet(this, SCHEDULED, DONE)) {
+				command.run();
+			}
+			return;
+		}
+		if (state != SCHEDULED) {
+			return;
+		}
+		try {
+			command.run();
+		} finally {
+			if (state == SCHEDULED) {
+				deadline += period;
+				wheel.reschedule(this);
+			}
+		}
+	}
+	
+	@Override
+	public void discard() {
+		if (period == 0L) {
+			STATE_UPDATER.compareAndSet(this, SCHEDULED, DONE);
+			return;
+		}
+		// This run is skipped, but a repeating timer keeps its schedule
+		if (state == SCHEDULED) {
+			delay = period;
+			wheel.submit(this);
+		}
+	}
+	
+	@Override
+	public boolean isRevoked() {
+		return state == CANCELLED;
+	}
+	
+	@Override
+	public boolean cancel() {
+		return STATE_UPDATER.compareAndSet(this, SCHEDULED, CANCELLED);
+	}
+	
+	@Override
+	public boolean isCancelled() {
+		return state == CANCELLED;
+	}
+	
+	@Override
+	public String toString() {
+		return "WheelTimer [command=" + command + ", period=" + period + ", state=" + state + "]";
+	}
+
+}
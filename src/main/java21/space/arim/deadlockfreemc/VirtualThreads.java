@@ -0,0 +1,65 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads. <br>
+ * <br>
+ * This is the Java 21 version, used in place of the Java 8 version in {@code src/main/java}
+ * when running on Java 21 and later.
+ * 
+ * @author A248
+ * 
+ */
+final class VirtualThreads {
+
+	private VirtualThreads() {}
+	
+	/**
+	 * Whether virtual threads are available on this runtime
+	 * 
+	 * @return true, on this version
+	 */
+	static boolean isAvailable() {
+		return true;
+	}
+	
+	/**
+	 * Gets the shared executor which starts a virtual thread per task
+	 * 
+	 * @return the executor
+	 */
+	static Executor executor() {
+		return ExecutorHolder.EXECUTOR;
+	}
+	
+	private static final class ExecutorHolder {
+	
+		// Factories from Thread.Builder are safe for concurrent use
+		private static final ThreadFactory FACTORY = Thread.ofVirtual().name("DeadlockFreeMC-Virtual-", 0L).factory();
+		
+		static final Executor EXECUTOR = (command) -> FACTORY.newThread(Objects.requireNonNull(command, "command")).start();
+	
+	}
+
+}
@@ -20,13 +20,22 @@ package space.arim.deadlockfreemc;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -43,6 +52,25 @@ public class AbstractImplementationTest {
 		df = new TestImpl(scheduler);
 	}
 	
+	/**
+	 * Keeps the main thread busy, so that tasks queue up, until the returned latch is released
+	 * 
+	 */
+	private CountDownLatch occupyMainThread() throws InterruptedException {
+		CountDownLatch busy = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		scheduler.execute(() -> {
+			busy.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				fail(ex);
+			}
+		});
+		busy.await();
+		return release;
+	}
+	
 	private CompletableFuture<?> getDeadlockableFuture(Consumer<CompletableFuture<?>> inProgressFutureAcceptor) {
 		assertFalse(df.isPrimaryThread());
 		return CompletableFuture.runAsync(() -> {
@@ -102,6 +130,562 @@ public class AbstractImplementationTest {
 		}
 	}
 	
+	@Test
+	public void testJoinAllAndAny() {
+		CompletableFuture.runAsync(() -> {
+			assertTrue(df.isPrimaryThread());
+			List<CompletableFuture<Integer>> futures = new ArrayList<>();
+			for (int n = 0; n < 5; n++) {
+				int value = n;
+				futures.add(CompletableFuture.supplyAsync(() -> value).thenApplyAsync((v) -> v * 2, df));
+			}
+			df.joinAll(futures);
+			for (int n = 0; n < 5; n++) {
+				assertEquals(Integer.valueOf(n * 2), futures.get(n).join());
+			}
+			CompletableFuture<Integer> never = new CompletableFuture<>();
+			CompletableFuture<Integer> mainThreadResult = CompletableFuture.runAsync(() -> {}).thenApplyAsync((v) -> 7, df);
+			assertEquals(Integer.valueOf(7), df.<Integer>joinAny(Arrays.asList(never, mainThreadResult)));
+			assertThrows(TimeoutException.class, () -> df.joinAll(Arrays.asList(never, mainThreadResult), 20L, TimeUnit.MILLISECONDS));
+		}, scheduler).join();
+	}
+	
+	@Test
+	public void testNestedJoinsPastMaximumDepth() {
+		df.setMetricsEnabled(true);
+		df.setMaximumJoinDepth(1);
+		CompletableFuture.runAsync(() -> {
+			// Completed by another thread, so that dependent tasks are queued rather than run in place
+			CompletableFuture<Void> outerTrigger = new CompletableFuture<>();
+			CompletableFuture<Integer> outer = outerTrigger.thenApplyAsync((v) -> {
+				// Completed by another thread, so awaited without running tasks
+				CompletableFuture<Integer> async = CompletableFuture.supplyAsync(() -> 1);
+				int first = df.join(async);
+				// Needs the main thread, so tasks are run after the grace period
+				CompletableFuture<Void> innerTrigger = new CompletableFuture<>();
+				CompletableFuture<Integer> onMainThread = innerTrigger.thenApplyAsync((w) -> 2, df);
+				CompletableFuture.runAsync(() -> innerTrigger.complete(null));
+				return first + df.join(onMainThread);
+			}, df);
+			CompletableFuture.runAsync(() -> outerTrigger.complete(null));
+			assertEquals(Integer.valueOf(3), df.join(outer));
+		}, scheduler).join();
+		DeadlockFreeMetrics metrics = df.getMetrics();
+		assertEquals(2, metrics.getMaximumJoinDepth());
+		assertEquals(1L, metrics.getJoinDepthEscapes());
+		assertTrue(metrics.getNestedDrainNanos() > 0L);
+		df.setMetricsEnabled(false);
+	}
+	
+	@Test
+	public void testStallWatchdog() {
+		List<StallReport> reports = new CopyOnWriteArrayList<>();
+		df.setStallWatchdog(StallWatchdog.of(20L, TimeUnit.MILLISECONDS)
+				.withListener(reports::add).withSubmitSiteSampling(1));
+		Runnable slowTask = () -> sleep(100L);
+		df.submit(slowTask).join();
+		CompletableFuture.runAsync(() -> {
+			df.join(CompletableFuture.runAsync(() -> sleep(100L)));
+		}, scheduler).join();
+		Consumer<Long> slowAction = AbstractImplementationTest::sleep;
+		df.execute(slowAction, 100L);
+		CompletableFuture.runAsync(() -> {}, df).join();
+		df.setStallWatchdog(StallWatchdog.disabled());
+		
+		StallReport slowTaskReport = reports.get(0);
+		assertEquals(StallReport.Kind.SLOW_TASK, slowTaskReport.getKind());
+		assertTrue(slowTaskReport.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(20L));
+		assertTrue(slowTaskReport.getSubmitSite().length > 0, "Submit site should be sampled");
+		StallReport longWaitReport = reports.get(1);
+		assertEquals(StallReport.Kind.LONG_WAIT, longWaitReport.getKind());
+		// An ordinary future has no submit site, but the join call is found
+		assertEquals(0, longWaitReport.getSubmitSite().length);
+		StackTraceElement[] waitSite = longWaitReport.getWaitSite();
+		assertTrue(waitSite.length > 0, "Wait site should be found");
+		assertEquals(AbstractImplementationTest.class.getName(), waitSite[0].getClassName());
+		// The pooled task is recycled as it runs, so the action must be captured beforehand
+		assertEquals(slowAction.getClass(), reports.get(2).getSubjectClass());
+		assertEquals(3, reports.size());
+	}
+	
+	private static void sleep(long millis) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException ex) {
+			fail(ex);
+		}
+	}
+	
+	@Test
+	public void testPipelineFusesStages() {
+		df.setMetricsEnabled(true);
+		CompletableFuture<String> result = df.pipeline()
+				.thenApplyAsync((v) -> 1)
+				.thenApplyAsync((number) -> number + 1)
+				.thenApplySync((number) -> {
+					assertTrue(df.isPrimaryThread());
+					return number * 10;
+				})
+				.thenApplySync((number) -> {
+					assertTrue(df.isPrimaryThread());
+					return "result-" + number;
+				})
+				.start();
+		assertEquals("result-20", result.join());
+		// Both main thread stages ran as a single task
+		CompletableFuture.runAsync(() -> {}, scheduler).join();
+		assertEquals(1L, df.getMetrics().getTasksRun());
+		df.setMetricsEnabled(false);
+	}
+	
+	@Test
+	public void testAsyncPool() throws InterruptedException {
+		Executor async = df.async();
+		assertSame(async, df.async());
+		String threadName = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), async).join();
+		assertTrue(threadName.startsWith("DeadlockFreeMC-Async-"), threadName);
+		// Pool threads may still join on main thread tasks, albeit with a warning
+		CompletableFuture<Integer> fromMainThread = CompletableFuture.supplyAsync(() -> {
+			CompletableFuture<Integer> onMainThread = CompletableFuture.supplyAsync(() -> {
+				assertTrue(df.isPrimaryThread());
+				return 5;
+			}, df);
+			return df.join(onMainThread);
+		}, async);
+		assertEquals(Integer.valueOf(5), fromMainThread.join());
+		assertTrue(df.shutdownAsync(10L, TimeUnit.SECONDS));
+		// One owner shutting down its async tasks leaves the shared pool running for others
+		DeadlockFree owner = ((AbstractImplementation) df).forOwner("owner", 1);
+		CompletableFuture<?> ownerTask = CompletableFuture.runAsync(() -> sleep(50L), owner.async());
+		assertTrue(owner.shutdownAsync(10L, TimeUnit.SECONDS));
+		assertTrue(ownerTask.isDone());
+		assertThrows(RejectedExecutionException.class, owner::async);
+		assertEquals("after", CompletableFuture.supplyAsync(() -> "after", df.async()).join());
+		// Obtaining the owner again accepts async tasks again
+		assertSame(owner, ((AbstractImplementation) df).forOwner("owner", 1));
+		CompletableFuture.runAsync(() -> {}, owner.async()).join();
+	}
+	
+	@Test
+	public void testVirtualThreads() {
+		if (!df.supportsVirtualThreads()) {
+			assertThrows(UnsupportedOperationException.class, df::virtualThreads);
+			return;
+		}
+		// Blocking-style code hopping to the main thread and back
+		CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> {
+			int fromMainThread = df.join(df.submit(() -> {
+				assertTrue(df.isPrimaryThread());
+				return 5;
+			}));
+			assertFalse(df.isPrimaryThread());
+			return fromMainThread + 1;
+		}, df.virtualThreads());
+		assertEquals(Integer.valueOf(6), result.join());
+	}
+	
+	@Test
+	public void testBuilderStartsWhenUsed() {
+		AtomicInteger starts = new AtomicInteger();
+		SimulatedTickSource simulated = new SimulatedTickSource(scheduler);
+		ManagedDeadlockFree managed = DeadlockFree.builder().tickSource(new TickSource() {
+		
+			@Override
+			public void start(Callback callback) {
+				starts.incrementAndGet();
+				simulated.start(callback);
+			}
+			
+			@Override
+			public void stop() {
+				simulated.stop();
+			}
+		}).queueChunkSize(4).build();
+		assertEquals(0, starts.get());
+		int result = managed.join(managed.submit(() -> {
+			assertTrue(managed.isPrimaryThread());
+			return 3;
+		}));
+		assertEquals(3, result);
+		// More tasks than fit in a chunk
+		CompletableFuture<?> last = null;
+		for (int n = 0; n < 10; n++) {
+			last = managed.submit(() -> {});
+		}
+		last.join();
+		assertEquals(1, starts.get());
+		
+		managed.shutdown();
+		assertTrue(managed.isShutdown());
+		assertThrows(RejectedExecutionException.class, () -> managed.execute(() -> {}));
+		managed.shutdown();
+	}
+	
+	@Test
+	public void testTickBudgetDefersTasks() {
+		df.setTickBudget(TickBudget.of(1L, TimeUnit.MILLISECONDS).withMinimumTasks(2));
+		TickStats stats = CompletableFuture.supplyAsync(() -> {
+			// Queue tasks while the main thread is busy, so that no tick runs in between
+			Thread producer = new Thread(() -> {
+				for (int n = 0; n < 6; n++) {
+					df.execute(() -> {
+						try {
+							TimeUnit.MILLISECONDS.sleep(5L);
+						} catch (InterruptedException ex) {
+							fail(ex);
+						}
+					});
+				}
+			});
+			producer.start();
+			try {
+				producer.join();
+			} catch (InterruptedException ex) {
+				fail(ex);
+			}
+			((TestImpl) df).unleash();
+			return df.getLastTickStats();
+		}, scheduler).join();
+		assertEquals(2, stats.getTasksRun());
+		assertEquals(4L, stats.getTasksDeferred());
+		assertTrue(stats.getNanosUsed() >= TimeUnit.MILLISECONDS.toNanos(10L));
+	}
+	
+	@Test
+	public void testUnlimitedBudgetDefersNothing() {
+		TickStats stats = CompletableFuture.supplyAsync(() -> {
+			// A task arriving while the main thread is busy is not deferred by the budget
+			df.forEachOnMain(Arrays.asList(1), (element) -> {
+				CompletableFuture.runAsync(() -> df.execute(() -> {})).join();
+			});
+			((TestImpl) df).unleash();
+			return df.getLastTickStats();
+		}, scheduler).join();
+		assertEquals(0L, stats.getTasksDeferred());
+	}
+	
+	@Test
+	public void testIdleDrainingBetweenTicks() {
+		long totalLatency = 0L;
+		for (int n = 0; n < 10; n++) {
+			long start = System.nanoTime();
+			CompletableFuture.runAsync(() -> assertTrue(df.isPrimaryThread()), df).join();
+			totalLatency += System.nanoTime() - start;
+		}
+		// Without idle draining, each task would wait for the next tick
+		assertTrue(totalLatency < TimeUnit.MILLISECONDS.toNanos(100L), "Tasks should run between ticks");
+	}
+	
+	@Test
+	public void testIdleDrainingHandsBackThread() {
+		long elapsed = CompletableFuture.supplyAsync(() -> {
+			long start = System.nanoTime();
+			((TestImpl) df).unleashIdle(start + TimeUnit.MILLISECONDS.toNanos(40L));
+			return System.nanoTime() - start;
+		}, scheduler).join();
+		// The server's own work between ticks should not wait for the whole idle window
+		assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(20L), "Idle draining should return once idle");
+	}
+	
+	@Test
+	public void testMetrics() {
+		assertNull(df.getMetrics());
+		df.setMetricsEnabled(true);
+		DeadlockFreeMetrics metrics = df.getMetrics();
+		assertNotNull(metrics);
+		for (int n = 0; n < 5; n++) {
+			CompletableFuture.runAsync(() -> {}, df).join();
+		}
+		// Tasks are recorded after they complete, so wait for the main thread to finish the tick
+		CompletableFuture.runAsync(() -> {}, scheduler).join();
+		assertEquals(5L, metrics.getTasksRun());
+		assertEquals(5L, metrics.getQueueDelays().getCount());
+		assertEquals(5L, metrics.getRunTimes().getCount());
+		assertEquals(0L, metrics.getQueueDepth());
+		df.setMetricsEnabled(false);
+		assertNull(df.getMetrics());
+	}
+	
+	@Test
+	public void testBatchRunsInOrder() {
+		List<Integer> results = new ArrayList<>();
+		Batch batch = df.batch();
+		for (int n = 0; n < 100; n++) {
+			int value = n;
+			batch.add(() -> {
+				assertTrue(df.isPrimaryThread());
+				results.add(value);
+			});
+		}
+		batch.submit();
+		assertEquals(0, batch.size());
+		// Queued after the batch, so runs after it
+		CompletableFuture.runAsync(() -> {}, df).join();
+		assertEquals(100, results.size());
+		for (int n = 0; n < 100; n++) {
+			assertEquals(Integer.valueOf(n), results.get(n));
+		}
+	}
+	
+	@Test
+	public void testCoalescedKeepsLatest() {
+		List<Integer> results = CompletableFuture.supplyAsync(() -> {
+			List<Integer> runs = new ArrayList<>();
+			// Submit while the main thread is busy, so that no tick runs in between
+			Thread producer = new Thread(() -> {
+				for (int n = 0; n < 100; n++) {
+					int value = n;
+					df.executeCoalesced("key", () -> runs.add(value));
+				}
+			});
+			producer.start();
+			try {
+				producer.join();
+			} catch (InterruptedException ex) {
+				fail(ex);
+			}
+			((TestImpl) df).unleash();
+			return runs;
+		}, scheduler).join();
+		assertEquals(1, results.size());
+		assertEquals(Integer.valueOf(99), results.get(0));
+	}
+	
+	@Test
+	public void testBulkProcessingAcrossTicks() {
+		List<Integer> elements = new ArrayList<>();
+		for (int n = 0; n < 1000; n++) {
+			elements.add(n);
+		}
+		List<Integer> doubled = df.mapOnMain(elements, (element) -> {
+			assertTrue(df.isPrimaryThread());
+			return element * 2;
+		}).join();
+		for (int n = 0; n < 1000; n++) {
+			assertEquals(Integer.valueOf(n * 2), doubled.get(n));
+		}
+		// Awaiting a bulk operation from the main thread must not deadlock
+		int sum = CompletableFuture.supplyAsync(() -> {
+			int[] total = new int[1];
+			df.join(df.forEachOnMain(elements, (element) -> total[0] += element));
+			return total[0];
+		}, scheduler).join();
+		assertEquals(499500, sum);
+	}
+	
+	@Test
+	public void testBulkJobJoiningOnMainThread() {
+		CompletableFuture<?> completedByOtherJob = new CompletableFuture<>();
+		CompletableFuture<Void> jobs = CompletableFuture.supplyAsync(() -> {
+			// The first job's nested drain steps the second job to completion
+			CompletableFuture<Void> joining = df.forEachOnMain(Arrays.asList(1), (element) -> df.join(completedByOtherJob));
+			CompletableFuture<Void> completing = df.forEachOnMain(Arrays.asList(1), (element) -> completedByOtherJob.complete(null));
+			((TestImpl) df).unleash();
+			return CompletableFuture.allOf(joining, completing);
+		}, scheduler).join();
+		assertTrue(jobs.isDone());
+		jobs.join();
+	}
+	
+	@Test
+	public void testBulkProcessingCancellation() throws InterruptedException {
+		AtomicInteger processed = new AtomicInteger();
+		Iterable<Integer> endless = () -> Stream.iterate(0, (n) -> n + 1).iterator();
+		CompletableFuture<Void> future = df.forEachOnMain(endless, (element) -> processed.incrementAndGet());
+		TimeUnit.MILLISECONDS.sleep(200L);
+		assertTrue(processed.get() > 0);
+		assertTrue(future.cancel(false));
+		// Let the main thread notice the cancellation
+		CompletableFuture.runAsync(() -> {}, df).join();
+		int processedAfterCancel = processed.get();
+		TimeUnit.MILLISECONDS.sleep(200L);
+		assertEquals(processedAfterCancel, processed.get());
+	}
+	
+	@Test
+	public void testQueueBoundPolicies() throws InterruptedException {
+		df.setQueueBound(QueueBound.of(2, OverflowPolicy.DROP_OLDEST));
+		// Removal takes effect once the main thread next polls
+		CompletableFuture.runAsync(() -> {}, df).join();
+		CountDownLatch release = occupyMainThread();
+		List<Integer> ran = new CopyOnWriteArrayList<>();
+		// Plain tasks may have dependents, so are never dropped
+		df.execute(() -> ran.add(-1));
+		for (int n = 0; n < 4; n++) {
+			df.execute(ran::add, n);
+		}
+		df.execute(() -> ran.add(-2));
+		assertThrows(RejectedExecutionException.class, () -> df.execute(() -> ran.add(-3)));
+		df.setQueueBound(QueueBound.of(2, OverflowPolicy.REJECT));
+		assertThrows(RejectedExecutionException.class, () -> df.execute(() -> ran.add(-4)));
+		df.setQueueBound(QueueBound.of(2, OverflowPolicy.CALLER_RUNS));
+		List<Thread> asyncSafeRanOn = new ArrayList<>();
+		df.execute((AsyncSafe) () -> asyncSafeRanOn.add(Thread.currentThread()));
+		assertEquals(Arrays.asList(Thread.currentThread()), asyncSafeRanOn);
+		// Other tasks wait for room instead
+		Thread producer = new Thread(() -> df.execute(() -> ran.add(-5)));
+		producer.start();
+		while (producer.getState() != Thread.State.TIMED_WAITING) {
+			assertTrue(producer.isAlive(), "Producer finished without waiting");
+			Thread.yield();
+		}
+		release.countDown();
+		producer.join();
+		df.setQueueBound(QueueBound.unbounded());
+		CompletableFuture.runAsync(() -> {}, df).join();
+		assertEquals(Arrays.asList(-1, -2, -5), ran);
+	}
+	
+	@Test
+	public void testPriorityLanes() throws InterruptedException {
+		CountDownLatch release = occupyMainThread();
+		List<Priority> ran = new ArrayList<>();
+		for (Priority priority : new Priority[] {Priority.LOW, Priority.NORMAL, Priority.HIGH}) {
+			df.execute(() -> ran.add(priority), priority);
+		}
+		release.countDown();
+		CompletableFuture.runAsync(() -> {}, df.withPriority(Priority.LOW)).join();
+		assertEquals(Arrays.asList(Priority.HIGH, Priority.NORMAL, Priority.LOW), ran);
+	}
+	
+	@Test
+	public void testJoinedTasksPromoted() throws InterruptedException {
+		DeadlockFree other = ((AbstractImplementation) df).forOwner("other", 1);
+		CountDownLatch release = occupyMainThread();
+		List<String> ran = new ArrayList<>();
+		CompletableFuture<List<CompletableFuture<?>>> awaited = new CompletableFuture<>();
+		df.execute(() -> df.joinAll(awaited.join()));
+		for (int n = 0; n < 3; n++) {
+			df.execute(() -> ran.add("low"), Priority.LOW);
+			df.execute(() -> ran.add("normal"));
+			other.execute(() -> ran.add("other"), Priority.HIGH);
+		}
+		// Queued at NORMAL behind everything else
+		CompletableFuture<?> submitted = df.submit(() -> ran.add("submitted"));
+		CompletableFuture<?> pipeline = df.pipeline().thenAcceptSync((v) -> ran.add("pipeline")).start();
+		awaited.complete(Arrays.asList(submitted, pipeline));
+		release.countDown();
+		CompletableFuture.runAsync(() -> {}, df.withPriority(Priority.LOW)).join();
+		assertEquals(Arrays.asList("submitted", "pipeline"), ran.subList(0, 2));
+		assertEquals(11, ran.size());
+	}
+	
+	@Test
+	public void testOwnersTakeTurns() throws InterruptedException {
+		df.setMetricsEnabled(true);
+		DeadlockFree flooder = ((AbstractImplementation) df).forOwner("flooder", 1);
+		DeadlockFree other = ((AbstractImplementation) df).forOwner("other", 1);
+		assertThrows(UnsupportedOperationException.class, () -> flooder.setQueueBound(QueueBound.unbounded()));
+		CountDownLatch release = occupyMainThread();
+		List<String> ran = new ArrayList<>();
+		for (int n = 0; n < 10; n++) {
+			flooder.execute(() -> ran.add("flooder"));
+		}
+		other.execute(() -> ran.add("other"));
+		other.execute(() -> ran.add("other"));
+		release.countDown();
+		// Queued behind the flooder's tasks, so done once all have run
+		CompletableFuture.runAsync(() -> {}, flooder).join();
+		assertEquals(Arrays.asList("flooder", "other", "flooder", "other"), ran.subList(0, 4));
+		assertEquals(12, ran.size());
+		// Tasks are recorded after they complete, so wait for the main thread to finish the tick
+		CompletableFuture.runAsync(() -> {}, scheduler).join();
+		assertEquals(11L, df.getMetrics().getOwnerUsage().get("flooder").getTasksRun());
+		assertEquals(2L, df.getMetrics().getOwnerUsage().get("other").getTasksRun());
+		df.setMetricsEnabled(false);
+	}
+	
+	@Test
+	public void testScheduledTasks() {
+		CompletableFuture<Boolean> delayed = new CompletableFuture<>();
+		df.schedule(() -> delayed.complete(df.isPrimaryThread()), 2L);
+		assertTrue(delayed.join());
+		
+		AtomicInteger runs = new AtomicInteger();
+		CompletableFuture<Void> repeatedThrice = new CompletableFuture<>();
+		ScheduledTask repeating = df.scheduleRepeating(() -> {
+			if (runs.incrementAndGet() == 3) {
+				repeatedThrice.complete(null);
+			}
+		}, 0L, 1L);
+		repeatedThrice.join();
+		assertTrue(repeating.cancel());
+		assertTrue(repeating.isCancelled());
+		// Let the main thread pass the cancellation
+		CompletableFuture.runAsync(() -> {}, df).join();
+		int runsAfterCancel = runs.get();
+		CompletableFuture<Void> later = new CompletableFuture<>();
+		df.schedule(() -> later.complete(null), 3L);
+		later.join();
+		assertEquals(runsAfterCancel, runs.get());
+	}
+	
+	@Test
+	public void testCancelledSubmissionsSkipped() throws InterruptedException {
+		CountDownLatch release = occupyMainThread();
+		AtomicInteger ran = new AtomicInteger();
+		CompletableFuture<Void> cancelled = df.submit(() -> {
+			ran.incrementAndGet();
+		});
+		CompletableFuture<Integer> kept = df.submit(() -> ran.incrementAndGet() * 10);
+		assertTrue(cancelled.cancel(false));
+		CompletableFuture<Void> continuation = cancelled.thenRunAsync(ran::incrementAndGet, df);
+		release.countDown();
+		assertEquals(Integer.valueOf(10), kept.join());
+		assertTrue(continuation.isCompletedExceptionally());
+		assertEquals(1, ran.get());
+	}
+	
+	@Test
+	public void testArgumentCarryingExecute() {
+		List<String> ran = new ArrayList<>();
+		for (int n = 0; n < 3; n++) {
+			df.execute(ran::add, "single-" + n);
+			df.execute((String prefix, Integer number) -> ran.add(prefix + number), "double-", n);
+		}
+		CompletableFuture.runAsync(() -> {}, df).join();
+		assertEquals(Arrays.asList("single-0", "double-0", "single-1", "double-1", "single-2", "double-2"), ran);
+	}
+	
+	@Test
+	public void testSnapshots() throws InterruptedException {
+		AtomicInteger counter = new AtomicInteger();
+		Snapshot<Integer> snapshot = df.snapshot("counter", () -> {
+			assertTrue(df.isPrimaryThread());
+			return counter.incrementAndGet();
+		}, RefreshPolicy.whenInvalidated());
+		assertSame(snapshot, df.snapshot("counter", () -> -1, RefreshPolicy.everyTick()));
+		// Created off the main thread, so computed at the start of a tick
+		while (!snapshot.isPresent()) {
+			Thread.yield();
+		}
+		assertEquals(Integer.valueOf(1), snapshot.get());
+		snapshot.invalidate();
+		CompletableFuture.runAsync(() -> {}, df).join();
+		assertEquals(Integer.valueOf(2), snapshot.get());
+		// Reading an evicted snapshot gives the last value at once, even when the queue is full
+		Snapshot<String> evicted = df.snapshot("idle", () -> "old", RefreshPolicy.whenInvalidated().withMaximumIdle(1L));
+		awaitTicks(3L);
+		CountDownLatch release = occupyMainThread();
+		df.setQueueBound(QueueBound.of(1, OverflowPolicy.REJECT));
+		df.execute(() -> {});
+		assertEquals("old", evicted.get());
+		release.countDown();
+		df.setQueueBound(QueueBound.unbounded());
+		// Once evicted again, it reads through to its replacement
+		awaitTicks(3L);
+		Snapshot<String> replacement = df.snapshot("idle", () -> "new", RefreshPolicy.whenInvalidated());
+		assertNotSame(evicted, replacement, "Snapshot must have been evicted");
+		awaitTicks(1L);
+		assertEquals("new", evicted.get());
+	}
+	
+	private void awaitTicks(long ticks) {
+		CompletableFuture<Void> elapsed = new CompletableFuture<>();
+		df.schedule(() -> elapsed.complete(null), ticks);
+		elapsed.join();
+	}
+	
 	@AfterEach
 	public void tearDown() {
 		scheduler.shutdown();
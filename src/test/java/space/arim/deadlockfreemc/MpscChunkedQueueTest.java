@@ -0,0 +1,131 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class MpscChunkedQueueTest {
+
+	@Test
+	public void testFifoAcrossChunks() {
+		MpscChunkedQueue<Integer> queue = new MpscChunkedQueue<>(4);
+		assertTrue(queue.isEmpty());
+		for (int n = 0; n < 10; n++) {
+			queue.offer(n);
+		}
+		assertEquals(10L, queue.size());
+		for (int n = 0; n < 10; n++) {
+			assertFalse(queue.isEmpty());
+			assertEquals(Integer.valueOf(n), queue.poll());
+		}
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+		assertEquals(0L, queue.size());
+	}
+	
+	@Test
+	public void testReusedChunks() {
+		MpscChunkedQueue<Integer> queue = new MpscChunkedQueue<>(4);
+		for (int round = 0; round < 20; round++) {
+			// Timed rounds alternate with untimed ones, whose chunks must not keep stale stamps
+			boolean timed = round % 2 == 0;
+			for (int n = 0; n < 10; n++) {
+				queue.offer(n, (timed) ? n + 1 : 0L);
+			}
+			for (int n = 0; n < 10; n++) {
+				assertEquals(Integer.valueOf(n), queue.poll());
+				assertEquals((timed) ? n + 1 : 0L, queue.polledStamp());
+			}
+			assertTrue(queue.isEmpty());
+			assertEquals(0L, queue.size());
+		}
+	}
+	
+	@Test
+	public void testRemoveOldest() {
+		MpscChunkedQueue<Integer> queue = new MpscChunkedQueue<>(4);
+		queue.enableRemoval();
+		for (int n = 0; n < 6; n++) {
+			queue.offer(n);
+		}
+		// Removal takes effect once the consumer polls
+		assertEquals(Integer.valueOf(0), queue.poll());
+		assertEquals(Integer.valueOf(1), queue.removeOldest());
+		assertEquals(Integer.valueOf(2), queue.removeOldest());
+		assertEquals(3L, queue.size());
+		for (int n = 3; n < 6; n++) {
+			assertEquals(Integer.valueOf(n), queue.poll());
+		}
+		assertTrue(queue.isEmpty());
+		assertNull(queue.removeOldest());
+		assertEquals(0L, queue.size());
+	}
+	
+	@Test
+	public void testConcurrentProducers() throws InterruptedException {
+		final int producers = 8;
+		final int perProducer = 50_000;
+		MpscChunkedQueue<long[]> queue = new MpscChunkedQueue<>(16);
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		CountDownLatch start = new CountDownLatch(1);
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			executor.execute(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException ex) {
+					fail(ex);
+				}
+				for (int n = 0; n < perProducer; n++) {
+					queue.offer(new long[] {producer, n});
+				}
+			});
+		}
+		start.countDown();
+		
+		long[] lastSeen = new long[producers];
+		Arrays.fill(lastSeen, -1L);
+		int received = 0;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30L);
+		while (received < producers * perProducer) {
+			long[] element = queue.poll();
+			if (element == null) {
+				assertTrue(System.nanoTime() - deadline < 0, "Timed out awaiting elements");
+				Thread.yield();
+				continue;
+			}
+			int producer = (int) element[0];
+			assertEquals(lastSeen[producer] + 1, element[1], "Per-producer order must be kept");
+			lastSeen[producer] = element[1];
+			received++;
+		}
+		assertNull(queue.poll());
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10L, TimeUnit.SECONDS));
+	}
+
+}
@@ -0,0 +1,123 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RegionizedImplTest {
+
+	/*
+	 * One simulated tick thread per region, replaced if the region is created again
+	 */
+	private final Map<Object, ScheduledExecutorService> tickThreads = new ConcurrentHashMap<>();
+	private final List<ScheduledExecutorService> allTickThreads = new CopyOnWriteArrayList<>();
+	private DeadlockFree df;
+	
+	@BeforeEach
+	public void setup() {
+		df = new RegionizedImpl("global", this::newTickSource);
+	}
+	
+	private TickSource newTickSource(Object regionKey) {
+		ScheduledExecutorService tickThread = Executors.newSingleThreadScheduledExecutor();
+		tickThreads.put(regionKey, tickThread);
+		allTickThreads.add(tickThread);
+		return new SimulatedTickSource(tickThread);
+	}
+	
+	private Thread threadOf(Object regionKey) {
+		return CompletableFuture.supplyAsync(Thread::currentThread, tickThreads.get(regionKey)).join();
+	}
+	
+	@Test
+	public void testRoutingToRegions() {
+		CompletableFuture<Thread> ranOnA = new CompletableFuture<>();
+		df.execute("A", () -> ranOnA.complete(Thread.currentThread()));
+		CompletableFuture<Thread> ranOnB = new CompletableFuture<>();
+		df.execute("B", () -> ranOnB.complete(Thread.currentThread()));
+		assertEquals(threadOf("A"), ranOnA.join());
+		assertEquals(threadOf("B"), ranOnB.join());
+		assertNotEquals(ranOnA.join(), ranOnB.join());
+		assertFalse(df.isPrimaryThread());
+		
+		// Unrouted tasks from region threads stay on that region
+		CompletableFuture<Thread> stayedOnA = new CompletableFuture<>();
+		df.execute("A", () -> {
+			assertTrue(df.isPrimaryThread());
+			CompletableFuture.runAsync(() -> stayedOnA.complete(Thread.currentThread()), df);
+		});
+		assertEquals(threadOf("A"), stayedOnA.join());
+	}
+	
+	@Test
+	public void testJoinDrainsOnlyOwnRegion() {
+		Map<String, Thread> ranOn = new ConcurrentHashMap<>();
+		CompletableFuture<Void> joined = new CompletableFuture<>();
+		df.execute("A", () -> {
+			// Completes only once region A runs the continuation, while A is joining
+			CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+				df.execute("B", () -> ranOn.put("B", Thread.currentThread()));
+			}).thenRunAsync(() -> ranOn.put("A", Thread.currentThread()), (command) -> df.execute("A", command));
+			df.join(future);
+			joined.complete(null);
+		});
+		joined.join();
+		CompletableFuture.runAsync(() -> {}, (command) -> df.execute("B", command)).join();
+		assertEquals(threadOf("A"), ranOn.get("A"));
+		assertEquals(threadOf("B"), ranOn.get("B"));
+	}
+	
+	@Test
+	public void testIdleRegionsEvicted() throws InterruptedException {
+		ManagedDeadlockFree evicting = new RegionizedImpl("evicting-global", this::newTickSource,
+				MpscChunkedQueue.DEFAULT_CHUNK_SIZE, 2);
+		CompletableFuture.runAsync(() -> {}, (command) -> evicting.execute("E", command)).join();
+		ScheduledExecutorService evicted = tickThreads.get("E");
+		TimeUnit.MILLISECONDS.sleep(500L);
+		CompletableFuture<Thread> ranOn = new CompletableFuture<>();
+		evicting.execute("E", () -> ranOn.complete(Thread.currentThread()));
+		assertNotSame(evicted, tickThreads.get("E"), "Region must be created again once evicted");
+		assertEquals(threadOf("E"), ranOn.join());
+		evicting.shutdown();
+		assertThrows(RejectedExecutionException.class, () -> evicting.execute("F", () -> {}));
+	}
+	
+	@AfterEach
+	public void tearDown() throws InterruptedException {
+		for (ScheduledExecutorService tickThread : allTickThreads) {
+			tickThread.shutdown();
+			assertTrue(tickThread.awaitTermination(10L, TimeUnit.SECONDS), "Tick thread must not timeout on termination");
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates server ticks on a scheduler thread acting as the main thread.
+ * Reports both tick start and tick end, like Paper.
+ * 
+ */
+public class SimulatedTickSource implements TickSource {
+
+	static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+	
+	private final ScheduledExecutorService scheduler;
+	private volatile ScheduledFuture<?> task;
+	
+	SimulatedTickSource(ScheduledExecutorService scheduler) {
+		this.scheduler = scheduler;
+	}
+	
+	@Override
+	public void start(Callback callback) {
+		task = scheduler.scheduleAtFixedRate(() -> {
+			long tickStart = System.nanoTime();
+			callback.onTickStart();
+			callback.onTickEnd(TICK_NANOS - (System.nanoTime() - tickStart));
+		}, 0L, TICK_NANOS, TimeUnit.NANOSECONDS);
+	}
+	
+	@Override
+	public void stop() {
+		task.cancel(false);
+	}
+
+}
@@ -20,14 +20,13 @@ package space.arim.deadlockfreemc;
 
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 public class TestImpl extends AbstractImplementation {
 
 	private volatile Thread primaryThread;
 	
 	TestImpl(ScheduledExecutorService scheduler) {
-		scheduler.scheduleAtFixedRate(this::unleash, 0L, 50L, TimeUnit.MILLISECONDS);
+		super(new SimulatedTickSource(scheduler));
 		CompletableFuture.runAsync(() -> {
 			primaryThread = Thread.currentThread();
 		}, scheduler).join();
@@ -0,0 +1,78 @@
+/* 
+ * DeadlockFreeMC
+ * Copyright © 2020 Anand Beh <https://www.arim.space>
+ * 
+ * DeadlockFreeMC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * DeadlockFreeMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with DeadlockFreeMC. If not, see <https://www.gnu.org/licenses/>
+ * and navigate to version 3 of the GNU General Public License.
+ */
+package space.arim.deadlockfreemc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class TimingWheelTest {
+
+	private final Map<WheelTimer, Long> dueAt = new HashMap<>();
+	private final TimingWheel wheel = new TimingWheel((timer) -> {
+		assertNull(dueAt.put(timer, currentTick()), "Timer must only be due once");
+	});
+	
+	private long currentTick() {
+		return wheel.currentTick();
+	}
+	
+	private WheelTimer timer(long delay) {
+		return new WheelTimer(wheel, null, () -> {}, delay, 0L);
+	}
+	
+	@Test
+	public void testDueAtDeadlineAcrossLevels() {
+		long[] delays = {0L, 1L, 2L, 63L, 64L, 65L, 127L, 4095L, 4096L, 4097L, 70_000L, 300_000L};
+		// Start partway through the lowest wheel, so deadlines do not fall on boundaries
+		for (int n = 0; n < 37; n++) {
+			wheel.advance();
+		}
+		Map<WheelTimer, Long> expected = new HashMap<>();
+		for (long delay : delays) {
+			WheelTimer timer = timer(delay);
+			wheel.schedule(timer);
+			expected.put(timer, currentTick() + Math.max(1L, delay));
+		}
+		while (currentTick() < 37L + 300_000L) {
+			wheel.advance();
+		}
+		assertEquals(expected, dueAt);
+	}
+	
+	@Test
+	public void testCancelledAndSubmittedTimers() {
+		WheelTimer cancelled = timer(100L);
+		wheel.schedule(cancelled);
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+		WheelTimer submitted = timer(5L);
+		wheel.submit(submitted);
+		for (int n = 0; n < 200; n++) {
+			wheel.advance();
+		}
+		assertFalse(dueAt.containsKey(cancelled));
+		// Submitted timers take effect at the next tick
+		assertEquals(Long.valueOf(5L), dueAt.get(submitted));
+	}
+
+}